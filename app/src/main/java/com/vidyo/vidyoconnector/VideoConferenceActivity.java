@@ -133,7 +133,7 @@ public class VideoConferenceActivity extends FragmentActivity implements Connect
 
         int w = v.getWidth();
         int h = v.getHeight();
-        Logger.i("Show View at Called: " + w + ", " + h);
+        Logger.i("Show View at Called: %d, %d", w, h);
 
         connector.showViewAt(v, 0, 0, w, h);
         connector.setViewAnimationSpeed(v, 0);
@@ -318,6 +318,9 @@ public class VideoConferenceActivity extends FragmentActivity implements Connect
         ConnectorPkg.setApplicationUIContext(null);
 
         Logger.i("Connector instance has been released.");
+
+        /* Recreated activity keeps rolling the same log file */
+        if (isFinishing()) AppUtils.stopLogRotation();
     }
 
     @Override
@@ -16,21 +16,41 @@ import com.vidyo.VidyoClient.Device.Device;
 import com.vidyo.VidyoClient.Device.VideoFrame;
 import com.vidyo.VidyoClient.Device.VirtualVideoSource;
 import com.vidyo.VidyoClient.Endpoint.MediaFormat;
+import com.vidyo.vidyoconnector.share.capture.ImageDropPolicy;
+import com.vidyo.vidyoconnector.share.capture.ScreenCaptureSource;
 import com.vidyo.vidyoconnector.share.capture.ShareSession;
-import com.vidyo.vidyoconnector.share.capture.ShareSessionListener;
+import com.vidyo.vidyoconnector.share.metrics.FrameDropReporter;
+import com.vidyo.vidyoconnector.share.metrics.PipelineMetrics;
+import com.vidyo.vidyoconnector.share.metrics.SequenceTracker;
+import com.vidyo.vidyoconnector.share.metrics.StageMetrics;
+import com.vidyo.vidyoconnector.share.model.CropRegion;
 import com.vidyo.vidyoconnector.share.model.FrameHolder;
+import com.vidyo.vidyoconnector.share.model.FramePool;
 import com.vidyo.vidyoconnector.share.model.FrameIntervals;
+import com.vidyo.vidyoconnector.share.model.OutputFormat;
 import com.vidyo.vidyoconnector.share.model.ShareConstraints;
+import com.vidyo.vidyoconnector.share.pipeline.PipelineScheduler;
 import com.vidyo.vidyoconnector.share.provider.FrameProvider;
 import com.vidyo.vidyoconnector.share.provider.FrameProviderListener;
+import com.vidyo.vidyoconnector.share.provider.LatestFrameMailbox;
+import com.vidyo.vidyoconnector.share.record.FrameRecorder;
+import com.vidyo.vidyoconnector.share.source.FrameSource;
+import com.vidyo.vidyoconnector.share.source.FrameSourceFactory;
+import com.vidyo.vidyoconnector.share.source.FrameSourceListener;
+import com.vidyo.vidyoconnector.share.transform.ColorMatrix;
+import com.vidyo.vidyoconnector.share.transform.ConstraintScaler;
+import com.vidyo.vidyoconnector.share.transform.PixelConverter;
+import com.vidyo.vidyoconnector.share.transform.StripeExecutor;
+import com.vidyo.vidyoconnector.share.transform.YuvConverter;
 import com.vidyo.vidyoconnector.utils.Logger;
 
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
-public class ShareManager implements Connector.IRegisterVirtualVideoSourceEventListener, ShareSessionListener, FrameProviderListener {
+
+public class ShareManager implements Connector.IRegisterVirtualVideoSourceEventListener, FrameSourceListener, FrameProviderListener {
 
     public interface Listener {
 
@@ -41,18 +61,42 @@ public class ShareManager implements Connector.IRegisterVirtualVideoSourceEventL
         void onError(String message);
     }
 
-    private static final MediaFormat MEDIA_FORMAT = MediaFormat.VIDYO_MEDIAFORMAT_RGBA;
+    private static final OutputFormat DEFAULT_OUTPUT_FORMAT = OutputFormat.RGBA;
+    private static final ColorMatrix DEFAULT_COLOR_MATRIX = ColorMatrix.BT601;
     private static final FrameIntervals FRAME_INTERVALS = new FrameIntervals();
 
     private static final int SCREEN_SHARE_REQUEST_CODE = 5;
 
+    /* Convert captured images only when provider is about to push them */
+    private static final boolean LAZY_FRAME_CONVERSION = true;
+    /* Downscale frames to constraints before pushing instead of letting the library do it */
+    private static final boolean SCALE_TO_CONSTRAINTS = true;
+    /* Capture at the constrained size right away, frames then already fit and scaling above is a no-op */
+    private static final boolean CAPTURE_AT_CONSTRAINED_SIZE = true;
+    /* Captured images the reader can hand out at once and what happens to the ones conversion can't keep up with */
+    private static final int IMAGE_READER_MAX_IMAGES = ShareSession.DEFAULT_MAX_IMAGES;
+    private static final ImageDropPolicy IMAGE_DROP_POLICY = ImageDropPolicy.DROP_OLDEST;
+
     private Activity activity;
     private Listener shareListener;
 
     private Connector connector;
     private final MediaProjectionManager projectionManager;
 
-    private final ShareSession shareCaptureSession;
+    private final FramePool framePool = new FramePool();
+    private final PipelineMetrics pipelineMetrics = new PipelineMetrics();
+    private final StageMetrics prepareMetrics = pipelineMetrics.stage(PipelineMetrics.Stage.PREPARE);
+    private final StageMetrics sendMetrics = pipelineMetrics.stage(PipelineMetrics.Stage.SEND);
+    /* Sequence numbers of sent frames, gaps are frames dropped anywhere between capture and send */
+    private final SequenceTracker sentSequence = pipelineMetrics.getSequence();
+    /* Splits per-pixel work (scaling, conversion, hashing) into row bands processed on all cores, shared process-wide */
+    private final StripeExecutor stripeExecutor;
+    private final ConstraintScaler constraintScaler;
+    /* Null for RGBA output, frames are pushed as captured */
+    private volatile PixelConverter pixelConverter;
+    /* Records captured frames while set, see startRecording(File) */
+    private volatile FrameRecorder frameRecorder;
+    private final FrameSource frameSource;
     private final FrameProvider frameProvider;
 
     private Intent captureIntent;
@@ -66,20 +110,53 @@ public class ShareManager implements Connector.IRegisterVirtualVideoSourceEventL
     private boolean isBounded;
 
     /**
-     * Executor that responsible for tasks with frame sending
-     * It is restricted to the queue with max 2 tasks and any new tasks will be skipped,
-     * in order to avoid queue overflow that can't be handled by the sdk
+     * Latest wins handoff between provider and sender lane. If the sender is still busy with the previous frame,
+     * a waiting frame is replaced by the newer one, so the sdk never gets stale frames queued up.
      */
-    private final ExecutorService frameTaskExecutor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
-            new LinkedBlockingQueue<>(2), new ThreadPoolExecutor.DiscardPolicy());
+    private final LatestFrameMailbox frameMailbox = new LatestFrameMailbox();
+    private final PipelineScheduler.Lane frameSenderLane;
+    /* At most one send task is queued, frames posted meanwhile are served by it */
+    private final AtomicBoolean sendScheduled = new AtomicBoolean();
+    private final Runnable sendTask = this::sendPendingFrames;
+
+    /* Recording runs on its own lane, a frame the recorder can't keep up with is replaced by the newer one */
+    private final LatestFrameMailbox recordMailbox = new LatestFrameMailbox();
+    private final PipelineScheduler.Lane recorderLane;
+    private final AtomicBoolean recordScheduled = new AtomicBoolean();
+    private final Runnable recordTask = this::recordPendingFrames;
 
     public ShareManager(Activity activity, Connector connector) {
+        this(activity, connector, PipelineScheduler.getDefault());
+    }
+
+    /**
+     * @param pipelineScheduler {@link PipelineScheduler} running capture, transform and send stages.
+     */
+    public ShareManager(Activity activity, Connector connector, PipelineScheduler pipelineScheduler) {
+        this(activity, connector, pipelineScheduler, ShareManager::createScreenCapture);
+    }
+
+    /**
+     * @param frameSourceFactory {@link FrameSourceFactory} of the source frames are shared from, screen capture
+     *                           by default. Sources other than {@link ScreenCaptureSource} don't need the capture
+     *                           grant, the projection is stopped right away.
+     */
+    public ShareManager(Activity activity, Connector connector, PipelineScheduler pipelineScheduler, FrameSourceFactory frameSourceFactory) {
         this.activity = activity;
         this.connector = connector;
         this.projectionManager = (MediaProjectionManager) activity.getSystemService(Context.MEDIA_PROJECTION_SERVICE);
 
-        this.shareCaptureSession = new ShareSession();
-        this.frameProvider = new FrameProvider();
+        this.stripeExecutor = pipelineScheduler.getStripeExecutor();
+        this.constraintScaler = new ConstraintScaler(framePool, stripeExecutor);
+        this.frameSenderLane = pipelineScheduler.newLane("ShareFrameSender", PipelineScheduler.PRIORITY_DISPLAY);
+        this.recorderLane = pipelineScheduler.newLane("ShareRecorder", PipelineScheduler.PRIORITY_CONTROL);
+
+        this.frameSource = frameSourceFactory.create(framePool, pipelineScheduler, pipelineMetrics);
+        this.frameSource.setLazyConversion(LAZY_FRAME_CONVERSION);
+        setOutputFormat(DEFAULT_OUTPUT_FORMAT, DEFAULT_COLOR_MATRIX);
+        this.frameProvider = new FrameProvider(pipelineScheduler);
+        this.frameProvider.setPipelineMetrics(pipelineMetrics);
+        if (LAZY_FRAME_CONVERSION) this.frameProvider.setFrameSupplier(this::obtainFrame);
 
         if (!this.connector.registerVirtualVideoSourceEventListener(this)) {
             Logger.e("Cannot register source listener.");
@@ -90,10 +167,27 @@ public class ShareManager implements Connector.IRegisterVirtualVideoSourceEventL
                 "Virtual_Share_23406002346", "Virtual Share");
     }
 
+    private static FrameSource createScreenCapture(FramePool framePool, PipelineScheduler pipelineScheduler, PipelineMetrics pipelineMetrics) {
+        final ShareSession shareSession = new ShareSession(framePool, pipelineScheduler);
+        shareSession.setMaxImages(IMAGE_READER_MAX_IMAGES);
+        shareSession.setDropPolicy(IMAGE_DROP_POLICY);
+        shareSession.setCaptureAtConstrainedSize(CAPTURE_AT_CONSTRAINED_SIZE);
+        shareSession.setPipelineMetrics(pipelineMetrics);
+        return shareSession;
+    }
+
     public void setShareListener(Listener listener) {
         shareListener = listener;
     }
 
+    /**
+     * Request share permissions for the region of the screen, see {@link #setCropRegion(CropRegion)}.
+     */
+    public void requestShare(CropRegion cropRegion) {
+        setCropRegion(cropRegion);
+        requestShare();
+    }
+
     /**
      * Request share permissions after crop area obtained.
      */
@@ -140,12 +234,79 @@ public class ShareManager implements Connector.IRegisterVirtualVideoSourceEventL
         }
     }
 
+    /**
+     * Select pixel layout of frames pushed to the virtual source.
+     *
+     * @param outputFormat {@link OutputFormat} RGBA as captured or YUV 4:2:0 (1.5 bytes per pixel).
+     * @param colorMatrix  {@link ColorMatrix} coefficients used for YUV output.
+     */
+    public void setOutputFormat(OutputFormat outputFormat, ColorMatrix colorMatrix) {
+        Logger.i("Share output format: %s, color matrix: %s", outputFormat, colorMatrix);
+        this.pixelConverter = outputFormat == OutputFormat.RGBA ? null : new YuvConverter(outputFormat, colorMatrix, stripeExecutor);
+    }
+
+    /**
+     * Share only a part of the screen, can be changed while sharing. Frames are cropped while being copied out
+     * of the captured image and constraints follow the cropped size.
+     *
+     * @param cropRegion {@link CropRegion} in screen pixels, null to share the whole screen.
+     */
+    public void setCropRegion(CropRegion cropRegion) {
+        if (frameSource instanceof ScreenCaptureSource) ((ScreenCaptureSource) frameSource).setCropRegion(cropRegion);
+    }
+
     public boolean isSharing() {
         return isSharing;
     }
 
+    /**
+     * Record captured frames, before scaling, into a file that can be replayed with
+     * {@link com.vidyo.vidyoconnector.share.source.ReplayFrameSource}.
+     *
+     * @param tileCompression store only tiles changed since the previous frame where it pays off.
+     */
+    public void startRecording(File file, boolean tileCompression) {
+        stopRecording();
+
+        try {
+            frameRecorder = new FrameRecorder(file, tileCompression);
+            Logger.i("Recording frames to %s", file);
+        } catch (IOException e) {
+            Logger.e("Cannot start recording: " + e.getMessage());
+        }
+    }
+
+    public void stopRecording() {
+        final FrameRecorder recorder = frameRecorder;
+        frameRecorder = null;
+        if (recorder == null) return;
+
+        try {
+            recorder.close();
+            Logger.i("Recording finished. Frames: %d, size: %d bytes, compression: %.2f",
+                    recorder.getFrameCount(), recorder.getWrittenBytes(), recorder.getCompressionRatio());
+        } catch (IOException e) {
+            Logger.e("Cannot finish recording: " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return per-stage counters and latencies of the share pipeline, accumulated since creation or the last reset.
+     */
+    public PipelineMetrics getPipelineMetrics() {
+        return pipelineMetrics;
+    }
+
+    /**
+     * Log current pipeline metrics.
+     */
+    public void dumpPipelineMetrics() {
+        for (String line : pipelineMetrics.dump().split("\n")) Logger.i("Pipeline %s", line);
+    }
+
     public void destroy() {
         stopShare();
+        stopRecording();
 
         if (connector != null) {
             this.connector.unregisterVirtualVideoSourceEventListener();
@@ -155,7 +316,14 @@ public class ShareManager implements Connector.IRegisterVirtualVideoSourceEventL
         }
 
         this.frameProvider.destroy();
-        this.shareCaptureSession.listen(null);
+        this.frameSource.listen(null);
+
+        this.frameSenderLane.shutdown();
+        this.frameMailbox.clear();
+        Logger.i("Frame sender stopped.");
+
+        this.recorderLane.shutdown();
+        this.recordMailbox.clear();
 
         this.shareListener = null;
         this.activity = null;
@@ -169,9 +337,20 @@ public class ShareManager implements Connector.IRegisterVirtualVideoSourceEventL
 
         MediaProjection mediaProjection = projectionManager.getMediaProjection(Activity.RESULT_OK, captureIntent);
 
-        /* Star capturing device frames */
-        this.shareCaptureSession.init(this.activity, mediaProjection);
-        this.shareCaptureSession.listen(this);
+        if (frameSource instanceof ScreenCaptureSource) {
+            ((ScreenCaptureSource) frameSource).setMediaProjection(this.activity, mediaProjection);
+        } else {
+            mediaProjection.stop();
+        }
+
+        /* Star producing frames, screen capture may wait for the previous capture to be released.
+         * Listening first, so a start failing right away is reported */
+        this.sentSequence.restart();
+        this.frameSource.listen(this);
+        if (!this.frameSource.start()) {
+            Logger.e("Frame source is already running.");
+            return;
+        }
 
         /* Start provider to the remote */
         this.frameProvider.listen(this);
@@ -186,14 +365,14 @@ public class ShareManager implements Connector.IRegisterVirtualVideoSourceEventL
         if (!isSharing || this.activity == null) return;
 
         Logger.i(">> updateShareOrientation");
-        this.shareCaptureSession.onCaptureOrientationChanged(this.activity);
+        if (frameSource instanceof ScreenCaptureSource) ((ScreenCaptureSource) frameSource).onCaptureOrientationChanged(this.activity);
         Logger.i("<< updateShareOrientation");
     }
 
     private void stopShare() {
         stopAndUnBindShareService();
 
-        if (shareCaptureSession != null) shareCaptureSession.requestReleaseSession();
+        if (frameSource != null) frameSource.requestRelease();
     }
 
     private void stopAndUnBindShareService() {
@@ -205,53 +384,251 @@ public class ShareManager implements Connector.IRegisterVirtualVideoSourceEventL
     }
 
     private void updateBoundConstraints() {
-        Logger.i("Update constraints: " + shareConstraints.toString());
+        Logger.i("Update constraints: %s", shareConstraints);
 
         virtualVideoSource.setBoundsConstraints(FRAME_INTERVALS.maxInterval, FRAME_INTERVALS.minInterval,
                 shareConstraints.maxWidth, shareConstraints.minWidth, shareConstraints.maxHeight, shareConstraints.minHeight);
     }
 
     private boolean isShareAvailable() {
-        return isShareAvailable && this.projectionManager != null && this.shareCaptureSession != null && virtualVideoSource != null;
+        return isShareAvailable && this.projectionManager != null && this.frameSource != null && virtualVideoSource != null;
     }
 
     @Override
     public void onFrameCaptured(FrameHolder frameHolder) {
         if (frameProvider != null) {
-            frameProvider.onFrameObtained(frameHolder);
+            frameProvider.onFrameObtained(prepareFrame(frameHolder));
+        } else {
+            frameHolder.release();
         }
     }
 
+    /**
+     * Stage between capture and provider.
+     *
+     * @return frame ready to be pushed, input frame ownership is taken over.
+     */
+    @WorkerThread
+    private FrameHolder prepareFrame(FrameHolder frameHolder) {
+        recordFrame(frameHolder);
+        if (!SCALE_TO_CONSTRAINTS) return frameHolder;
+
+        final long start = System.nanoTime();
+        prepareMetrics.countIn();
+
+        final FrameHolder prepared = constraintScaler.apply(frameHolder);
+
+        prepareMetrics.countOut();
+        prepareMetrics.recordLatency(System.nanoTime() - start);
+        return prepared;
+    }
+
+    /**
+     * Hand the frame over to the recorder lane, hashing and writing stay off the frame path.
+     */
+    @WorkerThread
+    private void recordFrame(FrameHolder frameHolder) {
+        if (frameRecorder == null) return;
+
+        recordMailbox.post(frameHolder.retain());
+        if (!recordScheduled.compareAndSet(false, true)) return;
+
+        try {
+            recorderLane.execute(recordTask);
+        } catch (RejectedExecutionException e) {
+            /* Destroyed */
+            recordScheduled.set(false);
+            recordMailbox.clear();
+        }
+    }
+
+    /**
+     * Recorder lane: write the newest frame from the mailbox.
+     */
+    @WorkerThread
+    private void recordPendingFrames() {
+        /* Cleared before polling, so a frame posted from now on schedules the next run */
+        recordScheduled.set(false);
+
+        FrameHolder frameHolder;
+        while ((frameHolder = recordMailbox.poll()) != null) {
+            try {
+                writeFrame(frameHolder);
+            } finally {
+                frameHolder.release();
+            }
+        }
+    }
+
+    private void writeFrame(FrameHolder frameHolder) {
+        final FrameRecorder recorder = frameRecorder;
+        if (recorder == null) return;
+
+        try {
+            if (!recorder.record(frameHolder)) {
+                Logger.w("Recording size limit reached.");
+                if (frameRecorder == recorder) stopRecording();
+            }
+        } catch (IllegalStateException e) {
+            /* Recording has just been stopped */
+        } catch (IOException e) {
+            Logger.e("Recording failed: " + e.getMessage());
+            if (frameRecorder == recorder) stopRecording();
+        }
+    }
+
+    /**
+     * Convert the newest captured image on provider tick, used in lazy conversion mode.
+     */
+    @WorkerThread
+    private FrameHolder obtainFrame() {
+        final FrameHolder converted = frameSource.convertPendingFrame();
+        return converted != null ? prepareFrame(converted) : null;
+    }
+
     @Override
     @WorkerThread
     public void onPushFrame(FrameHolder frameHolder) {
-        frameTaskExecutor.submit(() -> {
-            if (isShareAvailable()) {
-                final byte[] byteArray = frameHolder.byteArray;
-                final VideoFrame newVidyoVideoFrame = new VideoFrame(MEDIA_FORMAT, byteArray, byteArray.length, frameHolder.width, frameHolder.height);
-
-                virtualVideoSource.onFrame(newVidyoVideoFrame, MEDIA_FORMAT);
-                if (ShareConstraints.shouldUpdateConstraints(shareConstraints, frameHolder)) {
-                    shareConstraints = new ShareConstraints(frameHolder.width, frameHolder.height);
-                    updateBoundConstraints();
+        sendMetrics.countIn();
+        if (frameMailbox.post(frameHolder)) sendMetrics.countDropped(1);
+        if (!sendScheduled.compareAndSet(false, true)) return;
+
+        try {
+            frameSenderLane.execute(sendTask);
+        } catch (RejectedExecutionException e) {
+            /* Destroyed */
+            sendScheduled.set(false);
+            frameMailbox.clear();
+        }
+    }
+
+    /**
+     * Sender lane: take the newest frame from the mailbox and pass it to the source.
+     */
+    @WorkerThread
+    private void sendPendingFrames() {
+        /* Cleared before polling, so a frame posted from now on schedules the next run */
+        sendScheduled.set(false);
+
+        FrameHolder frameHolder;
+        while ((frameHolder = frameMailbox.poll()) != null) {
+            try {
+                if (frameProvider.shouldPush(frameHolder)) {
+                    final long start = System.nanoTime();
+                    sendFrame(frameHolder);
+                    sendMetrics.recordLatency(System.nanoTime() - start);
+                } else {
+                    sendMetrics.countDropped(1);
                 }
+            } catch (Exception e) {
+                Logger.e("Frame sending failed: " + e.getMessage());
+            } finally {
+                frameHolder.release();
             }
-        });
+
+            final long now = System.nanoTime();
+            if (frameMailbox.getOverwrites().isSampleDue(now)) {
+                Logger.i("Frame mailbox overwrites: %.1f/s", frameMailbox.getOverwrites().sample(now));
+            }
+        }
+    }
+
+    @WorkerThread
+    private void sendFrame(FrameHolder frameHolder) {
+        if (!isShareAvailable()) return;
+
+        final PixelConverter converter = pixelConverter;
+        final FrameHolder output = converter != null ? convertFrame(converter, frameHolder) : frameHolder;
+
+        try {
+            final MediaFormat mediaFormat = toMediaFormat(converter != null ? converter.getOutputFormat() : OutputFormat.RGBA);
+            final byte[] byteArray = output.byteArray;
+            final VideoFrame newVidyoVideoFrame = new VideoFrame(mediaFormat, byteArray, byteArray.length, output.width, output.height);
+            /* Capture time instead of the time the library receives the frame */
+            newVidyoVideoFrame.setTimestamp(output.timestamp);
+
+            /* Once the library is seen handing buffers back, it may read them after onFrame returns,
+             * so the pool must not reuse them until they are released. Until then they go back to the pool right away */
+            final boolean lent = framePool.lend(output);
+            try {
+                virtualVideoSource.onFrame(newVidyoVideoFrame, mediaFormat);
+            } catch (RuntimeException e) {
+                if (lent) framePool.recycle(byteArray);
+                throw e;
+            }
+            onFrameSent(frameHolder);
+        } finally {
+            if (output != frameHolder) output.release();
+        }
+
+        if (ShareConstraints.shouldUpdateConstraints(shareConstraints, frameHolder)) {
+            shareConstraints = new ShareConstraints(frameHolder.width, frameHolder.height);
+            updateBoundConstraints();
+        }
+    }
+
+    /**
+     * Count the frame in sequence statistics and capture-to-send latency, keepalive repeats are counted only once.
+     */
+    private void onFrameSent(FrameHolder frameHolder) {
+        sendMetrics.countOut();
+        if (!sentSequence.record(frameHolder.sequence)) return;
+
+        pipelineMetrics.getEndToEnd().record(System.nanoTime() - frameHolder.timestamp);
+    }
+
+    private FrameHolder convertFrame(PixelConverter converter, FrameHolder frameHolder) {
+        final OutputFormat outputFormat = converter.getOutputFormat();
+        final FrameHolder output = framePool.leaseDerived(outputFormat.frameSize(frameHolder.width, frameHolder.height),
+                frameHolder.width, frameHolder.height, frameHolder);
+
+        converter.convert(frameHolder.byteArray, frameHolder.width, frameHolder.height, output.byteArray);
+        return output;
+    }
+
+    private static MediaFormat toMediaFormat(OutputFormat outputFormat) {
+        switch (outputFormat) {
+            case I420:
+                return MediaFormat.VIDYO_MEDIAFORMAT_I420;
+            case NV12:
+                return MediaFormat.VIDYO_MEDIAFORMAT_NV12;
+            default:
+                return MediaFormat.VIDYO_MEDIAFORMAT_RGBA;
+        }
     }
 
     @Override
-    public void onSessionStopped() {
+    public void onSourceStopped() {
         isSharing = false;
 
         if (frameProvider != null) frameProvider.stop();
+        Logger.i("Share session stopped. Frame pool: %s", framePool);
+        logFrameDrops();
+        dumpPipelineMetrics();
         if (shareListener != null) shareListener.onShareStopped();
     }
 
+    /**
+     * Log frames dropped so far by every stage, in pipeline order.
+     */
+    public void logFrameDrops() {
+        final FrameDropReporter[] stages = {frameSource, frameProvider, frameMailbox, frameProvider.getDuplicateFrameFilter()};
+
+        final StringBuilder builder = new StringBuilder("Dropped frames:");
+        for (FrameDropReporter stage : stages) {
+            builder.append(' ').append(stage.getStageName()).append('=').append(stage.getDroppedFrames());
+        }
+        builder.append(", missing at send: ").append(sentSequence.getLost()).append(" of ")
+                .append(sentSequence.getLost() + sentSequence.getDelivered());
+
+        Logger.i(builder.toString());
+    }
+
     @Override
     public void onVirtualVideoSourceAdded(VirtualVideoSource virtualVideoSource) {
         if (virtualVideoSource.getType() == VirtualVideoSource.VirtualVideoSourceType.VIDYO_VIRTUALVIDEOSOURCETYPE_SHARE) {
             this.virtualVideoSource = virtualVideoSource;
-            Logger.i("Virtual share added. Name: " + virtualVideoSource.getName());
+            Logger.i("Virtual share added. Name: %s", virtualVideoSource.getName());
         }
     }
 
@@ -259,14 +636,14 @@ public class ShareManager implements Connector.IRegisterVirtualVideoSourceEventL
     public void onVirtualVideoSourceRemoved(VirtualVideoSource virtualVideoSource) {
         if (virtualVideoSource.getType() == VirtualVideoSource.VirtualVideoSourceType.VIDYO_VIRTUALVIDEOSOURCETYPE_SHARE) {
             this.virtualVideoSource = null;
-            Logger.i("Virtual share removed. Name: " + virtualVideoSource.getName());
+            Logger.i("Virtual share removed. Name: %s", virtualVideoSource.getName());
         }
     }
 
     @Override
     public void onVirtualVideoSourceStateUpdated(VirtualVideoSource virtualVideoSource, Device.DeviceState deviceState) {
         if (virtualVideoSource.getType() == VirtualVideoSource.VirtualVideoSourceType.VIDYO_VIRTUALVIDEOSOURCETYPE_SHARE) {
-            Logger.i("Virtual share state updated. Name: " + virtualVideoSource.getName() + ", State: " + deviceState);
+            Logger.i("Virtual share state updated. Name: %s, State: %s", virtualVideoSource.getName(), deviceState);
 
             switch (deviceState) {
                 case VIDYO_DEVICESTATE_Started:
@@ -286,7 +663,8 @@ public class ShareManager implements Connector.IRegisterVirtualVideoSourceEventL
 
     @Override
     public void onVirtualVideoSourceExternalMediaBufferReleased(VirtualVideoSource virtualVideoSource, byte[] bytes, long l) {
-
+        /* Ends the lend started in sendFrame, the first buffer handed back enables lending */
+        framePool.recycle(bytes);
     }
 
     private final ServiceConnection shareServiceConnection = new ServiceConnection() {
@@ -67,7 +67,7 @@ public class ShareService extends Service {
         String action = intent.getAction();
 
         if (action != null) {
-            Logger.i("Share service action: " + action);
+            Logger.i("Share service action: %s", action);
 
             if (SHARE_RELEASE_ACTION.equals(action)) {
                 stopShareService();
@@ -0,0 +1,19 @@
+package com.vidyo.vidyoconnector.share.capture;
+
+/**
+ * What to do with captured images that are waiting while the previous one is still being converted.
+ */
+public enum ImageDropPolicy {
+
+    /**
+     * Take the newest image with {@link android.media.ImageReader#acquireLatestImage()},
+     * older waiting images are closed unconverted. Keeps the latency low and never stalls the producer.
+     */
+    DROP_OLDEST,
+
+    /**
+     * Convert every image in order with {@link android.media.ImageReader#acquireNextImage()}.
+     * Once all reader slots are taken the producer stalls until conversion catches up.
+     */
+    KEEP_ALL
+}
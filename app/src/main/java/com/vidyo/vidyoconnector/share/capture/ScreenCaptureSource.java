@@ -0,0 +1,25 @@
+package com.vidyo.vidyoconnector.share.capture;
+
+import android.content.Context;
+import android.media.projection.MediaProjection;
+
+import com.vidyo.vidyoconnector.share.model.CropRegion;
+import com.vidyo.vidyoconnector.share.source.FrameSource;
+
+/**
+ * {@link FrameSource} capturing the device screen, started with the capture grant of the user.
+ */
+public interface ScreenCaptureSource extends FrameSource {
+
+    /**
+     * Grant used by the next {@link #start()}, the source takes over the projection and stops it when done.
+     */
+    void setMediaProjection(Context context, MediaProjection mediaProjection);
+
+    /**
+     * @param cropRegion {@link CropRegion} in screen pixels, null to capture the whole screen.
+     */
+    void setCropRegion(CropRegion cropRegion);
+
+    void onCaptureOrientationChanged(Context context);
+}
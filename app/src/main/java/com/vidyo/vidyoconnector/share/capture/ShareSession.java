@@ -1,7 +1,6 @@
 package com.vidyo.vidyoconnector.share.capture;
 
 import android.content.Context;
-import android.graphics.Bitmap;
 import android.graphics.PixelFormat;
 import android.hardware.display.DisplayManager;
 import android.hardware.display.VirtualDisplay;
@@ -12,39 +11,99 @@ import android.os.Handler;
 import android.os.Looper;
 import android.view.WindowManager;
 
+import androidx.annotation.WorkerThread;
+
+import com.vidyo.vidyoconnector.share.metrics.LatencyHistogram;
+import com.vidyo.vidyoconnector.share.metrics.PipelineMetrics;
+import com.vidyo.vidyoconnector.share.metrics.RateCounter;
+import com.vidyo.vidyoconnector.share.metrics.StageMetrics;
+import com.vidyo.vidyoconnector.share.model.CropRegion;
 import com.vidyo.vidyoconnector.share.model.FrameHolder;
+import com.vidyo.vidyoconnector.share.model.FramePool;
 import com.vidyo.vidyoconnector.share.model.ShareConfiguration;
+import com.vidyo.vidyoconnector.share.model.ShareConstraints;
+import com.vidyo.vidyoconnector.share.pipeline.PipelineScheduler;
+import com.vidyo.vidyoconnector.share.source.FrameSource;
+import com.vidyo.vidyoconnector.share.source.FrameSourceListener;
+import com.vidyo.vidyoconnector.share.transform.FrameCopier;
 import com.vidyo.vidyoconnector.utils.Logger;
 
-import java.nio.ByteBuffer;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * {@link FrameSource} capturing device screen through {@link MediaProjection}.
+ * <p>
+ * Start, reconfiguration and release are events handled in order on the capture thread according to
+ * {@link CaptureState}. Redundant reconfigurations are coalesced, session lanes are shut down once released.
+ */
+public class ShareSession implements ScreenCaptureSource {
 
-public class ShareSession {
+    /* One image in conversion, one held for lazy conversion and one free slot for the producer */
+    public static final int DEFAULT_MAX_IMAGES = 3;
 
-    private static final int IMAGE_READER_CONCURRENT_IMAGES_ACCESS_COUNT = 1;
+    /* Display metrics may lag behind the configuration change, new size is polled until it shows up */
+    private static final int ORIENTATION_RETRY_DELAY_IN_MILLIS = 25;
+    private static final int ORIENTATION_MAX_RETRIES = 16;
+    private static final long ORIENTATION_SWITCH_TARGET_MILLIS = 100;
 
-    private static final int START_CAPTURE_DELAY_IN_MILLIS = 400;
+    private final PipelineScheduler pipelineScheduler;
+    // Lane that responsible for tasks with image transformation, created for every capture run
+    private volatile PipelineScheduler.Lane imageTransformLane;
+    // Lane that responsible for session capture tasks, created for every capture run
+    private volatile PipelineScheduler.Lane captureLane;
 
-    // Executor that responsible for tasks with image transformation
-    private final ExecutorService imageTransformExecutorService = Executors.newSingleThreadExecutor();
-    // Executor that responsible for session capture tasks
-    private final ExecutorService captureExecutorService = Executors.newSingleThreadExecutor();
+    private final CaptureStateMachine stateMachine = new CaptureStateMachine((from, to) -> Logger.i("Capture state: %s -> %s", from, to));
+    /* Newest configuration requested while a reconfiguration is queued, null if only constraints changed */
+    private final AtomicReference<ShareConfiguration> pendingConfiguration = new AtomicReference<>();
+    private final AtomicBoolean reconfigureScheduled = new AtomicBoolean();
+
+    private final FramePool framePool;
 
-    private final Object imageTransformLock = new Object();
     private final Handler uiThreadHandler = new Handler(Looper.getMainLooper());
-    private final BlockingQueue<Runnable> captureTaskQueue = new LinkedBlockingQueue<>();
 
     private WindowManager windowManager;
-    private ImageReader imageReader;
+    private volatile SharedImageReader imageReader;
+    /* Reader allocated ahead for the other orientation, the one switched away from is kept for switching back */
+    private SharedImageReader standbyReader;
+    /* Reader switched to whose first image completes the switch */
+    private volatile SharedImageReader switchedReader;
+
+    private int maxImages = DEFAULT_MAX_IMAGES;
+    private volatile ImageDropPolicy dropPolicy = ImageDropPolicy.DROP_OLDEST;
 
     private MediaProjection mediaProjection;
+    /* Grant for the next start, guarded by this */
+    private Context grantContext;
+    private MediaProjection grantedProjection;
     private VirtualDisplay virtualDisplay;
-    private ShareConfiguration shareConfig;
+    private volatile ShareConfiguration shareConfig;
+
+    private FrameSourceListener sessionCallback;
+
+    /* Lazy conversion keeps the newest image only and converts it when a frame is actually requested */
+    private boolean lazyConversion;
+    private final AtomicReference<PendingImage> pendingImage = new AtomicReference<>();
+
+    /* Transform lane state: sequence number of the next acquired image, never reset so it stays monotonic over restarts */
+    private long nextSequence;
 
-    private ShareSessionListener sessionCallback;
+    /* Part of the screen to share, null for the whole screen */
+    private volatile CropRegion cropRegion;
+    /* Let the compositor downscale to constraints instead of capturing at full screen size */
+    private volatile boolean captureAtConstrainedSize;
+
+    private final RateCounter availableImages = new RateCounter();
+    private final RateCounter acquiredImages = new RateCounter();
+    private final RateCounter convertedFrames = new RateCounter();
+    private final RateCounter skippedConversions = new RateCounter();
+
+    private volatile StageMetrics acquireMetrics = new StageMetrics("acquire");
+    private volatile StageMetrics convertMetrics = new StageMetrics("convert");
+    private volatile LatencyHistogram orientationSwitchTime = new LatencyHistogram();
+    private volatile long orientationChangeTime = -1;
 
     private final Handler postOrientationHandler = new Handler();
     private Runnable postOrientationRunnable;
@@ -58,213 +117,706 @@ public class ShareSession {
         }
     };
 
-    public void init(Context context, MediaProjection mediaProjection) {
+    public ShareSession(FramePool framePool) {
+        this(framePool, PipelineScheduler.getDefault());
+    }
+
+    /**
+     * @param pipelineScheduler {@link PipelineScheduler} running capture and transform tasks.
+     */
+    public ShareSession(FramePool framePool, PipelineScheduler pipelineScheduler) {
+        this.framePool = framePool;
+        this.pipelineScheduler = pipelineScheduler;
+    }
+
+    @Override
+    public synchronized void setMediaProjection(Context context, MediaProjection mediaProjection) {
+        this.grantContext = context;
+        this.grantedProjection = mediaProjection;
+    }
+
+    /**
+     * Start capturing with the grant set by {@link #setMediaProjection(Context, MediaProjection)}.
+     *
+     * @return false if there is no grant or capture is already started.
+     */
+    @Override
+    public synchronized boolean start() {
+        final Context context = grantContext;
+        final MediaProjection projection = grantedProjection;
+        grantContext = null;
+        grantedProjection = null;
+
+        if (projection == null) {
+            Logger.e("Capture can't be started without screen capture grant");
+            return false;
+        }
+
+        return init(context, projection);
+    }
+
+    /**
+     * Start capturing. If the previous capture is still being released, capture starts once it's done.
+     *
+     * @return false if capture is already started, the projection is stopped then.
+     */
+    public synchronized boolean init(Context context, MediaProjection mediaProjection) {
+        final CaptureStateMachine.StartResult result = stateMachine.requestStart(() -> beginCapture(context, mediaProjection),
+                () -> cancelCapture(mediaProjection));
+
+        switch (result) {
+            case DEFERRED:
+                Logger.i("Capture starts once the previous one is released");
+                return true;
+            case REJECTED:
+                Logger.w("Capture can't be started in state " + stateMachine.getState());
+                mediaProjection.stop();
+                return false;
+            default:
+                return true;
+        }
+    }
+
+    private void beginCapture(Context context, MediaProjection mediaProjection) {
         this.windowManager = (WindowManager) context.getSystemService(Context.WINDOW_SERVICE);
         this.mediaProjection = mediaProjection;
 
-        initCaptureTaskListener();
-        startCapture(context);
+        pendingConfiguration.set(null);
+        reconfigureScheduled.set(false);
+        imageTransformLane = pipelineScheduler.newLane("ShareImageTransform", PipelineScheduler.PRIORITY_DISPLAY);
+        captureLane = pipelineScheduler.newLane("ShareCapture", PipelineScheduler.PRIORITY_CONTROL);
+
+        postCaptureTask(() -> startCapture(context));
     }
 
-    public void listen(ShareSessionListener captureSessionListener) {
+    /**
+     * Start deferred till the end of a release has been cancelled by a new release request.
+     */
+    private void cancelCapture(MediaProjection mediaProjection) {
+        Logger.i("Deferred capture start cancelled");
+        mediaProjection.stop();
+        notifySourceStopped();
+    }
+
+    public CaptureState getState() {
+        return stateMachine.getState();
+    }
+
+    @Override
+    public void listen(FrameSourceListener captureSessionListener) {
         this.sessionCallback = captureSessionListener;
     }
 
+    /**
+     * Enable convert-on-demand mode. Captured images are no longer delivered via
+     * {@link FrameSourceListener#onFrameCaptured(FrameHolder)}, the newest one has to be pulled
+     * with {@link #convertPendingFrame()} instead.
+     */
+    @Override
+    public void setLazyConversion(boolean lazyConversion) {
+        this.lazyConversion = lazyConversion;
+    }
+
+    @Override
+    public boolean isLazyConversion() {
+        return lazyConversion;
+    }
+
+    /**
+     * Number of images the reader can hand out at once, applied when the reader is created next time.
+     */
+    public void setMaxImages(int maxImages) {
+        if (maxImages < 1) throw new IllegalArgumentException("At least one image is required: " + maxImages);
+        this.maxImages = maxImages;
+    }
+
+    public int getMaxImages() {
+        return maxImages;
+    }
+
+    /**
+     * Policy for images waiting while conversion is busy. Lazy conversion always keeps the newest image only.
+     */
+    public void setDropPolicy(ImageDropPolicy dropPolicy) {
+        this.dropPolicy = dropPolicy;
+    }
+
+    public ImageDropPolicy getDropPolicy() {
+        return dropPolicy;
+    }
+
+    /**
+     * Share only a part of the screen. Region is cut out while copying the image, so pixels outside of it
+     * are never converted or pushed. Applied to the next converted image.
+     *
+     * @param cropRegion {@link CropRegion} in screen pixels, null to share the whole screen.
+     */
+    @Override
+    public void setCropRegion(CropRegion cropRegion) {
+        Logger.i("Share crop region: %s", cropRegion);
+        this.cropRegion = cropRegion;
+        requestReconfigure(null);
+    }
+
+    public CropRegion getCropRegion() {
+        return cropRegion;
+    }
+
+    /**
+     * Size virtual display and reader to the max resolution allowed by {@link ShareConstraints} for the shared area,
+     * so the system compositor does the downscale and full resolution pixels never reach the app.
+     * Capture is resized right away if it is running.
+     */
+    public void setCaptureAtConstrainedSize(boolean captureAtConstrainedSize) {
+        this.captureAtConstrainedSize = captureAtConstrainedSize;
+        requestReconfigure(null);
+    }
+
+    public boolean isCaptureAtConstrainedSize() {
+        return captureAtConstrainedSize;
+    }
+
+    /**
+     * Report reader and conversion stages to the given metrics.
+     */
+    public void setPipelineMetrics(PipelineMetrics pipelineMetrics) {
+        this.acquireMetrics = pipelineMetrics.stage(PipelineMetrics.Stage.ACQUIRE);
+        this.convertMetrics = pipelineMetrics.stage(PipelineMetrics.Stage.CONVERT);
+        this.orientationSwitchTime = pipelineMetrics.getOrientationSwitch();
+    }
+
+    @Override
+    public String getStageName() {
+        return "capture";
+    }
+
+    /**
+     * @return images closed unconverted, either skipped by the reader or replaced while waiting for lazy conversion.
+     */
+    @Override
+    public long getDroppedFrames() {
+        final long skippedByReader = availableImages.getTotal() - acquiredImages.getTotal();
+        return Math.max(0, skippedByReader) + skippedConversions.getTotal();
+    }
+
+    /**
+     * Convert the newest image captured since the previous call.
+     *
+     * @return converted frame owned by the caller or null if no new image is available.
+     */
+    @Override
+    @WorkerThread
+    public FrameHolder convertPendingFrame() {
+        final PendingImage pending = pendingImage.getAndSet(null);
+        if (pending == null) return null;
+
+        FrameHolder frameHolder = null;
+        try {
+            convertMetrics.countIn();
+            frameHolder = transformImageToFrame(pending.image, pending.sharedReader.scale, pending.sequence);
+        } catch (Exception e) {
+            Logger.e("Image conversion failed", e);
+        } finally {
+            pending.close();
+        }
+
+        logConversionRate();
+        return frameHolder;
+    }
+
+    /**
+     * Reconfigure capture in place for the new orientation: the virtual display is resized and switched
+     * to a reader allocated ahead, nothing is torn down. Time till the first image in the new orientation
+     * is recorded to {@link PipelineMetrics#getOrientationSwitch()}.
+     */
+    @Override
     public void onCaptureOrientationChanged(Context context) {
         if (postOrientationRunnable != null)
             postOrientationHandler.removeCallbacks(postOrientationRunnable);
 
+        orientationChangeTime = System.nanoTime();
+        checkOrientation(context, 0);
+    }
+
+    private void checkOrientation(Context context, int attempt) {
         postOrientationRunnable = () -> {
             postOrientationRunnable = null;
 
-            ShareConfiguration shareConfiguration = ShareConfiguration.create(context, windowManager);
-            if (shareConfiguration.width == this.shareConfig.width && shareConfiguration.height == this.shareConfig.height) {
+            final ShareConfiguration current = this.shareConfig;
+            final ShareConfiguration shareConfiguration = ShareConfiguration.create(context, windowManager);
+            if (current != null && shareConfiguration.width == current.width && shareConfiguration.height == current.height) {
+                if (attempt < ORIENTATION_MAX_RETRIES) {
+                    checkOrientation(context, attempt + 1);
+                    return;
+                }
+
                 Logger.i("Share orientation update not required. Skip update.");
+                orientationChangeTime = -1;
                 return;
             }
 
             Logger.i("onCaptureConfigChanged");
-            stopCapture();
-            startShareWithDelay(context);
+            requestReconfigure(shareConfiguration);
         };
 
-        postOrientationHandler.postDelayed(postOrientationRunnable, START_CAPTURE_DELAY_IN_MILLIS);
+        postOrientationHandler.postDelayed(postOrientationRunnable, attempt == 0 ? 0 : ORIENTATION_RETRY_DELAY_IN_MILLIS);
     }
 
-    public void requestReleaseSession() {
-        Logger.i(">> requestReleaseSession");
+    @Override
+    public void requestRelease() {
+        Logger.i(">> requestRelease");
         releaseSession();
-        Logger.i("<< requestReleaseSession");
+        Logger.i("<< requestRelease");
     }
 
     /**
-     * Function that checks correct order of session tasks such as start, stop, release.
+     * Run session task on the capture thread, tasks run in the order they are posted.
      */
-    private void initCaptureTaskListener() {
-        Logger.i("initCaptureTaskListener");
+    private void postCaptureTask(Runnable task) {
+        final PipelineScheduler.Lane lane = captureLane;
+        if (lane == null) return;
 
-        captureExecutorService.submit(() -> {
-            while (!isReleased()) {
+        try {
+            lane.execute(() -> {
                 try {
-                    final Runnable captureTask = captureTaskQueue.take();
-                    Logger.i("captureTaskListener: captureTask exist");
-                    captureTask.run();
+                    task.run();
                 } catch (Exception e) {
-                    Logger.e("captureTaskListener: captureTask failed " + e.getMessage());
+                    Logger.e("Capture task failed: " + e.getMessage());
                 }
-            }
-
-            Logger.i("captureTaskListener: session is released");
-        });
+            });
+        } catch (RejectedExecutionException e) {
+            Logger.i("Capture task ignored, session is released");
+        }
     }
 
-    private boolean isReleased() {
-        return mediaProjection == null;
+    private boolean transition(CaptureState from, CaptureState to) {
+        return stateMachine.transition(from, to);
     }
 
     private void startCapture(Context context) {
         Logger.i("startCapture");
-        captureTaskQueue.add(() -> {
+        /* Released before it has been started */
+        if (stateMachine.getState() != CaptureState.STARTING) return;
+
+        try {
             setupReader(context);
             setUpVirtualDisplay();
             mediaProjection.registerCallback(projectionCallback, uiThreadHandler);
-        });
+        } catch (Exception e) {
+            Logger.e("Capture start failed: " + e.getMessage());
+            releaseSession();
+            return;
+        }
+
+        transition(CaptureState.STARTING, CaptureState.CAPTURING);
     }
 
     private void setupReader(Context context) {
         shareConfig = ShareConfiguration.create(context, windowManager);
         Logger.i("Setup reader with config: %s", shareConfig);
 
-        imageReader = ImageReader.newInstance(shareConfig.width,
-                shareConfig.height,
+        imageReader = createReader(shareConfig.width, shareConfig.height, captureScale(shareConfig.width, shareConfig.height));
+
+        /* Rotation swaps the sides */
+        standbyReader = createReader(shareConfig.height, shareConfig.width, captureScale(shareConfig.height, shareConfig.width));
+    }
+
+    private SharedImageReader createReader(int screenWidth, int screenHeight, float scale) {
+        final SharedImageReader sharedReader = new SharedImageReader(ImageReader.newInstance(scaled(screenWidth, scale),
+                scaled(screenHeight, scale),
                 PixelFormat.RGBA_8888,
-                IMAGE_READER_CONCURRENT_IMAGES_ACCESS_COUNT);
-        imageReader.setOnImageAvailableListener(this::processImage, uiThreadHandler);
+                maxImages), scale);
+        sharedReader.reader.setOnImageAvailableListener(reader -> processImage(sharedReader), uiThreadHandler);
+        return sharedReader;
+    }
+
+    /**
+     * @return capture size relative to the screen, below 1 if the shared area exceeds constraints.
+     */
+    private float captureScale(int screenWidth, int screenHeight) {
+        if (!captureAtConstrainedSize) return 1;
+
+        final CropRegion requested = cropRegion;
+        final CropRegion region = requested != null ? requested.clampTo(screenWidth, screenHeight) : null;
+        final int width = region != null ? region.width : screenWidth;
+        final int height = region != null ? region.height : screenHeight;
+
+        final ShareConstraints constraints = new ShareConstraints(width, height);
+        return Math.min(1, Math.min((float) constraints.maxWidth / width, (float) constraints.maxHeight / height));
     }
 
-    private void processImage(ImageReader reader) {
-        imageTransformExecutorService.submit(() -> {
-            FrameHolder frameHolder = null;
+    private static int scaled(int size, float scale) {
+        return Math.max(1, Math.round(size * scale));
+    }
 
-            synchronized (imageTransformLock) {
-                try (Image image = reader.acquireNextImage()) {
-                    if (image != null) frameHolder = transformImageToFrame(image);
-                } catch (Exception e) {
-                    e.printStackTrace();
-                    Logger.e(e.getMessage());
-                }
-            }
+    /**
+     * Switch running capture to the new screen configuration or, if null, to the current constraints.
+     * Requests arriving while one is queued are merged into it, so a burst ends up in a single switch.
+     */
+    private void requestReconfigure(ShareConfiguration configuration) {
+        if (configuration != null) pendingConfiguration.set(configuration);
+        if (!reconfigureScheduled.compareAndSet(false, true)) return;
 
-            if (frameHolder != null && sessionCallback != null) {
-                sessionCallback.onFrameCaptured(frameHolder);
+        postCaptureTask(this::reconfigureCapture);
+    }
+
+    private void reconfigureCapture() {
+        /* Cleared before taking the configuration, so a newer request schedules the next switch */
+        reconfigureScheduled.set(false);
+        final ShareConfiguration configuration = pendingConfiguration.getAndSet(null);
+
+        if (!transition(CaptureState.CAPTURING, CaptureState.RECONFIGURING)) {
+            if (configuration != null) orientationChangeTime = -1;
+            return;
+        }
+
+        try {
+            final long start = System.nanoTime();
+            final ShareConfiguration current = shareConfig;
+            final boolean rotated = configuration != null
+                    && (configuration.width != current.width || configuration.height != current.height);
+            if (rotated) shareConfig = configuration;
+
+            final float scale = captureScale(shareConfig.width, shareConfig.height);
+            if (rotated || scale != imageReader.scale) {
+                switchReader(scale);
+                Logger.i("Capture reconfigured for %s in %d us", shareConfig, TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+            } else if (configuration != null) {
+                orientationChangeTime = -1;
             }
-        });
+        } finally {
+            transition(CaptureState.RECONFIGURING, CaptureState.CAPTURING);
+        }
     }
 
-    private void setUpVirtualDisplay() {
-        Logger.i("setUpVirtualDisplay");
-        final int virtualDisplayFlags = DisplayManager.VIRTUAL_DISPLAY_FLAG_AUTO_MIRROR | DisplayManager.VIRTUAL_DISPLAY_FLAG_PUBLIC;
-        virtualDisplay = mediaProjection.createVirtualDisplay("ScreenCapture", shareConfig.width, shareConfig.height, shareConfig.density,
-                virtualDisplayFlags, imageReader.getSurface(), null, uiThreadHandler);
+    /**
+     * Point the virtual display to a reader of the current configuration and scale. The display is kept, only its size
+     * and target surface change. Images still held from the previous reader stay valid until released.
+     */
+    private void switchReader(float scale) {
+        final SharedImageReader current = imageReader;
+        final int width = scaled(shareConfig.width, scale);
+        final int height = scaled(shareConfig.height, scale);
+
+        SharedImageReader next = standbyReader;
+        standbyReader = null;
+        if (next == null || next.scale != scale || next.reader.getWidth() != width || next.reader.getHeight() != height) {
+            if (next != null) next.release();
+            next = createReader(shareConfig.width, shareConfig.height, scale);
+        }
+
+        Logger.i("Switch capture to %dx%d", width, height);
+        /* Standby reader may still queue images of the orientation it was switched away from */
+        next.attachedAt = System.nanoTime();
+        virtualDisplay.resize(width, height, scaled(shareConfig.density, scale));
+        virtualDisplay.setSurface(next.reader.getSurface());
+
+        switchedReader = next;
+        imageReader = next;
+        /* Surface is detached, so it gets no more images. Kept for switching back */
+        standbyReader = current;
+    }
+
+    private void onSwitchCompleted() {
+        switchedReader = null;
+
+        final long changed = orientationChangeTime;
+        if (changed < 0) return;
+        orientationChangeTime = -1;
+
+        final long switchTime = System.nanoTime() - changed;
+        orientationSwitchTime.record(switchTime);
+
+        final long millis = TimeUnit.NANOSECONDS.toMillis(switchTime);
+        if (millis > ORIENTATION_SWITCH_TARGET_MILLIS) {
+            Logger.w("Orientation switch took " + millis + " ms, target " + ORIENTATION_SWITCH_TARGET_MILLIS + " ms");
+        } else {
+            Logger.i("Orientation switch took %d ms", millis);
+        }
+    }
+
+    private void processImage(SharedImageReader sharedReader) {
+        if (sharedReader == switchedReader) onSwitchCompleted();
+
+        availableImages.increment();
+        acquireMetrics.countIn();
+        /* Flag is per reader: after a switch, images of the new reader never wait for a drain of the old one */
+        if (!sharedReader.drainScheduled.compareAndSet(false, true)) return;
+
+        try {
+            imageTransformLane.execute(() -> drainImages(sharedReader));
+        } catch (RejectedExecutionException e) {
+            /* Late callback of a released session */
+            sharedReader.drainScheduled.set(false);
+        }
+    }
+
+    private void drainImages(SharedImageReader sharedReader) {
+        /* Cleared before acquiring, so an image arriving from now on schedules the next drain */
+        sharedReader.drainScheduled.set(false);
+
+        if (lazyConversion) {
+            holdLatestImage(sharedReader);
+        } else if (dropPolicy == ImageDropPolicy.DROP_OLDEST) {
+            convertImage(sharedReader, true);
+        } else {
+            /* Convert every queued image in order */
+            boolean converted;
+            do {
+                converted = convertImage(sharedReader, false);
+            } while (converted);
+        }
     }
 
     /**
-     * Function to start capture of share with delay.
-     * We need to set reader and virtual display preparations with delay during rotation of the screen.
-     * App start obtaining virtual display before there is one, so we set approximate delay.
+     * Convert one image and deliver it to the listener.
+     *
+     * @return false if no image has been available.
      */
-    private void startShareWithDelay(Context context) {
-        Logger.i("startShareWithDelay");
-        captureTaskQueue.add(() -> {
-            try {
-                Thread.sleep(START_CAPTURE_DELAY_IN_MILLIS);
-            } catch (InterruptedException e) {
-                e.printStackTrace();
-            }
+    private boolean convertImage(SharedImageReader sharedReader, boolean latest) {
+        if (!sharedReader.tryRetain()) return false;
+
+        FrameHolder frameHolder = null;
+        try (Image image = latest ? sharedReader.reader.acquireLatestImage() : sharedReader.reader.acquireNextImage()) {
+            if (image == null) return false;
+            /* Closed unconverted, the next queued image may be fresh */
+            if (isStale(sharedReader, image)) return true;
+
+            final long sequence = onImageAcquired(image);
+            convertMetrics.countIn();
+            frameHolder = transformImageToFrame(image, sharedReader.scale, sequence);
+        } catch (Exception e) {
+            Logger.e("Image conversion failed", e);
+            return false;
+        } finally {
+            sharedReader.release();
+        }
 
-            setupReader(context);
-            setUpVirtualDisplay();
-        });
+        logConversionRate();
+
+        final FrameSourceListener callback = sessionCallback;
+        if (callback != null) {
+            callback.onFrameCaptured(frameHolder);
+        } else {
+            frameHolder.release();
+        }
+
+        return true;
     }
 
-    private void releaseSession() {
+    /**
+     * Keep the newest image instead of converting it. Previously held image is dropped unconverted.
+     */
+    private void holdLatestImage(SharedImageReader sharedReader) {
+        if (!sharedReader.tryRetain()) return;
+
+        Image image = null;
+        try {
+            /* Reader with a single image slot can't hand out a new image while one is held */
+            if (sharedReader.reader.getMaxImages() <= 1) closePendingImage();
+
+            image = sharedReader.reader.acquireLatestImage();
+        } catch (Exception e) {
+            Logger.e("Image acquire failed", e);
+        }
+
+        if (image == null || isStale(sharedReader, image)) {
+            if (image != null) image.close();
+            sharedReader.release();
+            return;
+        }
+
+        final long sequence = onImageAcquired(image);
+
+        /* Reader reference is now held by the pending image */
+        final PendingImage replaced = pendingImage.getAndSet(new PendingImage(image, sharedReader, sequence));
+        if (replaced != null) onConversionSkipped(replaced);
+    }
+
+    private void closePendingImage() {
+        final PendingImage pending = pendingImage.getAndSet(null);
+        if (pending != null) onConversionSkipped(pending);
+    }
+
+    /**
+     * @return true if the image was captured before its reader got attached the last time, such an image shows
+     * content of the previous orientation and is dropped. It counts as skipped by the reader and gets no sequence number.
+     */
+    private static boolean isStale(SharedImageReader sharedReader, Image image) {
+        return image.getTimestamp() < sharedReader.attachedAt;
+    }
+
+    /**
+     * @return sequence number of the image. Images closed unconverted keep theirs, so they show up as gaps downstream.
+     */
+    private long onImageAcquired(Image image) {
+        acquiredImages.increment();
+        acquireMetrics.countOut();
+        acquireMetrics.recordLatency(System.nanoTime() - image.getTimestamp());
+        return nextSequence++;
+    }
+
+    private void onConversionSkipped(PendingImage pending) {
+        pending.close();
+        skippedConversions.increment();
+        convertMetrics.countIn();
+        convertMetrics.countDropped(1);
+    }
+
+    private void logConversionRate() {
+        final long now = System.nanoTime();
+        if (!convertedFrames.isSampleDue(now)) return;
+
+        final double converted = convertedFrames.sample(now);
+        final double saved = skippedConversions.sample(now);
+        final double available = availableImages.sample(now);
+        final double acquired = acquiredImages.sample(now);
+        Logger.i("Images available: %.1f/s, acquired: %.1f/s, conversions: %.1f/s, saved: %.1f/s",
+                available, acquired, converted, saved);
+    }
+
+    private void setUpVirtualDisplay() {
+        Logger.i("setUpVirtualDisplay");
+        final int virtualDisplayFlags = DisplayManager.VIRTUAL_DISPLAY_FLAG_AUTO_MIRROR | DisplayManager.VIRTUAL_DISPLAY_FLAG_PUBLIC;
+        final SharedImageReader sharedReader = imageReader;
+        virtualDisplay = mediaProjection.createVirtualDisplay("ScreenCapture", sharedReader.reader.getWidth(), sharedReader.reader.getHeight(),
+                scaled(shareConfig.density, sharedReader.scale), virtualDisplayFlags, sharedReader.reader.getSurface(), null, uiThreadHandler);
+    }
+
+    private synchronized void releaseSession() {
         Logger.i(">> releaseSession");
-        captureTaskQueue.add(() -> {
-            synchronized (imageTransformLock) {
-                releaseReader();
-                releaseVirtualDisplay();
-                releaseProjection();
-            }
-        });
+
+        if (!stateMachine.requestRelease()) {
+            Logger.i("<< releaseSession: nothing to release in state %s", stateMachine.getState());
+            return;
+        }
+
+        postCaptureTask(this::finishRelease);
 
         if (postOrientationRunnable != null)
             postOrientationHandler.removeCallbacks(postOrientationRunnable);
         postOrientationRunnable = null;
 
-        if (sessionCallback != null) sessionCallback.onSessionStopped();
-        sessionCallback = null;
+        notifySourceStopped();
 
         Logger.i("<< releaseSession");
     }
 
-    private void stopCapture() {
-        Logger.i("stopCapture");
-        captureTaskQueue.add(() -> {
-            synchronized (imageTransformLock) {
-                releaseReader();
-                releaseVirtualDisplay();
-            }
-        });
+    private void notifySourceStopped() {
+        final FrameSourceListener callback = sessionCallback;
+        sessionCallback = null;
+        if (callback != null) callback.onSourceStopped();
+    }
+
+    /**
+     * Last capture task: release capture resources and shut session lanes down. Queued conversions still complete.
+     * A start requested meanwhile runs right after, with new lanes.
+     */
+    private void finishRelease() {
+        /* Taken before the session can be started again with new ones */
+        final PipelineScheduler.Lane transformLane = imageTransformLane;
+        final PipelineScheduler.Lane sessionLane = captureLane;
+
+        try {
+            releaseReader();
+            releaseVirtualDisplay();
+            releaseProjection();
+        } finally {
+            transformLane.shutdown();
+            sessionLane.shutdown();
+
+            stateMachine.onReleased();
+        }
     }
 
     private void releaseVirtualDisplay() {
         Logger.i("releaseVirtualDisplay");
+        if (virtualDisplay == null) return;
+
         virtualDisplay.release();
         virtualDisplay = null;
     }
 
+    /**
+     * Drop session reference to the readers. They're closed right away or once an ongoing conversion is done.
+     */
     private void releaseReader() {
         Logger.i("releaseReader");
-        imageReader.close();
+        final SharedImageReader sharedReader = imageReader;
         imageReader = null;
+        switchedReader = null;
+
+        closePendingImage();
+        if (sharedReader != null) sharedReader.release();
+
+        if (standbyReader != null) standbyReader.release();
+        standbyReader = null;
     }
 
     private void releaseProjection() {
         Logger.i("releaseProjection");
+        if (mediaProjection == null) return;
+
         mediaProjection.unregisterCallback(projectionCallback);
         mediaProjection.stop();
         mediaProjection = null;
     }
 
     /**
-     * Transform image to bitmap logic.
+     * Transform image to frame logic.
+     * Pixels are copied row by row directly from the plane buffer, skipping row padding and anything outside
+     * of the crop region, into a buffer leased from {@link FramePool}.
      *
      * @param image {@link Image}
+     * @param scale    size of the image relative to the screen.
+     * @param sequence sequence number assigned when the image has been acquired.
      * @return converted {@link FrameHolder}
      */
-    private FrameHolder transformImageToFrame(Image image) {
-        final Image.Plane[] planes = image.getPlanes();
-        final ByteBuffer buffer = planes[0].getBuffer();
-        final int pixelStride = planes[0].getPixelStride();
-        final int rowStride = planes[0].getRowStride();
-        final int rowPadding = rowStride - pixelStride * image.getWidth();
-        final int widthDelta = rowPadding / pixelStride;
-        final int width = image.getWidth() + widthDelta;
-        final int height = image.getHeight();
-
-        Bitmap finalBitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
-        finalBitmap.copyPixelsFromBuffer(buffer);
-
-        if (widthDelta > 0) {
-            finalBitmap = Bitmap.createBitmap(finalBitmap, 0, 0, width - widthDelta, height);
+    private FrameHolder transformImageToFrame(Image image, float scale, long sequence) {
+        final long start = System.nanoTime();
+        final Image.Plane plane = image.getPlanes()[0];
+
+        /* Region set for another orientation may not fit, whole screen is shared if it's out of the image entirely */
+        final CropRegion requested = cropRegion;
+        CropRegion region = requested != null ? requested.scale(scale).clampTo(image.getWidth(), image.getHeight()) : null;
+        if (region == null) region = new CropRegion(0, 0, image.getWidth(), image.getHeight());
+
+        final int width = region.width;
+        final int height = region.height;
+
+        final FrameHolder frameHolder = framePool.lease(FrameCopier.packedSize(width, height), width, height, image.getTimestamp(), sequence);
+        try {
+            FrameCopier.copy(plane.getBuffer(), plane.getRowStride(), plane.getPixelStride(), region.left, region.top, width, height,
+                    frameHolder.byteArray);
+        } catch (RuntimeException e) {
+            /* Image doesn't match the region or stride it claims, the frame goes back to the pool */
+            frameHolder.release();
+            throw e;
         }
-
-        int bytes = finalBitmap.getByteCount();
-        ByteBuffer byteBuffer = ByteBuffer.allocate(bytes);
-        finalBitmap.copyPixelsToBuffer(byteBuffer);
-        final byte[] byteArray = byteBuffer.array();
-        final FrameHolder frameHolder = new FrameHolder(byteArray, finalBitmap.getWidth(), finalBitmap.getHeight(), image.getTimestamp());
-        finalBitmap.recycle();
+        convertedFrames.increment();
+        convertMetrics.countOut();
+        convertMetrics.recordLatency(System.nanoTime() - start);
         return frameHolder;
     }
-}
\ No newline at end of file
+
+    /**
+     * Image waiting for lazy conversion together with the reader reference that keeps it valid.
+     */
+    private static final class PendingImage {
+
+        final Image image;
+        final SharedImageReader sharedReader;
+        final long sequence;
+
+        PendingImage(Image image, SharedImageReader sharedReader, long sequence) {
+            this.image = image;
+            this.sharedReader = sharedReader;
+            this.sequence = sequence;
+        }
+
+        void close() {
+            image.close();
+            sharedReader.release();
+        }
+    }
+}
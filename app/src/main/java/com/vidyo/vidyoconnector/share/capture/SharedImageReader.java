@@ -0,0 +1,47 @@
+package com.vidyo.vidyoconnector.share.capture;
+
+import android.media.ImageReader;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reference counted {@link ImageReader}.
+ * <p>
+ * Session owns one reference, every image in use holds one more. The reader is closed when the last reference
+ * is released, so stopping capture never waits for an ongoing conversion and conversion never runs on a closed reader.
+ */
+final class SharedImageReader {
+
+    final ImageReader reader;
+    /* Reader size relative to the screen */
+    final float scale;
+    /* At most one drain task is queued per reader, image callbacks arriving meanwhile are served by it */
+    final AtomicBoolean drainScheduled = new AtomicBoolean();
+    /* Time the reader was last attached to the display, images captured before are left from an earlier attachment */
+    volatile long attachedAt;
+
+    private final AtomicInteger references = new AtomicInteger(1);
+
+    SharedImageReader(ImageReader reader, float scale) {
+        this.reader = reader;
+        this.scale = scale;
+    }
+
+    /**
+     * @return false if the reader is already closed or closing.
+     */
+    boolean tryRetain() {
+        int current;
+        do {
+            current = references.get();
+            if (current <= 0) return false;
+        } while (!references.compareAndSet(current, current + 1));
+
+        return true;
+    }
+
+    void release() {
+        if (references.decrementAndGet() == 0) reader.close();
+    }
+}
@@ -1,98 +1,263 @@
 package com.vidyo.vidyoconnector.share.provider;
 
-import android.os.Handler;
-import android.os.Message;
-
+import com.vidyo.vidyoconnector.share.metrics.FrameDropReporter;
+import com.vidyo.vidyoconnector.share.metrics.PipelineMetrics;
+import com.vidyo.vidyoconnector.share.metrics.RateCounter;
+import com.vidyo.vidyoconnector.share.metrics.StageMetrics;
 import com.vidyo.vidyoconnector.share.model.FrameHolder;
+import com.vidyo.vidyoconnector.share.pipeline.PipelineScheduler;
 import com.vidyo.vidyoconnector.utils.Logger;
 
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
 /**
  * Class for pushing frames with predefined frame rate (FPS)
+ * <p>
+ * Frames are pushed from a display priority {@link PipelineScheduler.Lane} on absolute deadlines calculated by
+ * {@link FrameScheduler}, so the cadence doesn't drift with push duration or main looper latency. Every tick
+ * schedules the next one, no thread waits in between. Lazy conversion asked for by the tick runs on the lane too.
  */
-public class FrameProvider implements Handler.Callback {
+public class FrameProvider implements FrameDropReporter {
 
-    private static final int PUSH_FRAME_TAG = 0x144;
+    private static final String LANE_NAME = "ShareFrameProvider";
 
     private static final int DEFAULT_FPS = 5;
     private static final long DEFAULT_INTERVAL = TimeUnit.SECONDS.toNanos(1) / DEFAULT_FPS;
 
-    private FrameProviderListener providerListener;
-    private long frameInterval = DEFAULT_INTERVAL;
-    private FrameHolder lastAcquiredFrame;
+    private volatile FrameProviderListener providerListener;
+    private volatile FrameSupplier frameSupplier;
+    private final FrameExchange lastAcquiredFrame = new FrameExchange();
+
+    private final FrameScheduler.Clock clock;
+    private final FrameScheduler frameScheduler = new FrameScheduler(DEFAULT_INTERVAL, FrameScheduler.LatePolicy.SKIP);
+
+    private final PipelineScheduler pipelineScheduler;
+    private final PipelineScheduler.Lane tickLane;
+    /* Tick chain currently running, null while stopped. A replaced chain ends with its running tick */
+    private Tick currentTick;
+    private ScheduledFuture<?> pendingTick;
+    private boolean isDestroyed;
+
+    private final DuplicateFrameFilter duplicateFrameFilter;
 
-    private Handler handler;
-    private boolean isRunning;
+    private volatile StageMetrics tickMetrics = new StageMetrics("provide");
 
-    public FrameProvider() {
-        this.handler = new Handler(this);
+    /**
+     * @param pipelineScheduler {@link PipelineScheduler} running ticks and per-pixel work of the provider.
+     */
+    public FrameProvider(PipelineScheduler pipelineScheduler) {
+        this(pipelineScheduler, FrameScheduler.Clock.SYSTEM);
+    }
+
+    public FrameProvider(PipelineScheduler pipelineScheduler, FrameScheduler.Clock clock) {
+        this.clock = clock;
+        this.pipelineScheduler = pipelineScheduler;
+        this.tickLane = pipelineScheduler.newLane(LANE_NAME, PipelineScheduler.PRIORITY_DISPLAY);
+        this.duplicateFrameFilter = new DuplicateFrameFilter(pipelineScheduler.getStripeExecutor());
     }
 
     public void listen(FrameProviderListener listener) {
         this.providerListener = listener;
     }
 
-    @Override
-    public boolean handleMessage(Message msg) {
-        if (msg.what == PUSH_FRAME_TAG && this.providerListener != null) {
-            this.providerListener.onPushFrame(this.lastAcquiredFrame);
-            if (this.isRunning) loop();
-            return true;
-        }
-
-        return false;
+    /**
+     * @param supplier {@link FrameSupplier} asked for a fresh frame on every tick, null if frames are only
+     *                 delivered via {@link #onFrameObtained(FrameHolder)}.
+     */
+    public void setFrameSupplier(FrameSupplier supplier) {
+        this.frameSupplier = supplier;
     }
 
-    public void startRestart() {
+    public synchronized void startRestart() {
         clearInterval();
+        if (isDestroyed) return;
+
+        duplicateFrameFilter.reset();
+        frameScheduler.start(clock.nanoTime());
 
-        this.isRunning = true;
-        updateInterval();
+        startTicks();
     }
 
-    public void stop() {
-        Logger.i("stop");
+    public synchronized void stop() {
+        Logger.i("stop. Scheduler: %s", frameScheduler);
         clearInterval();
+        releaseLastFrame();
     }
 
+    /**
+     * @param fpsNano frame interval in nanoseconds as provided by the library.
+     */
     public void updateFPS(long fpsNano) {
-        if (fpsNano == 0) {
+        if (fpsNano <= 0) {
             Logger.w("Wrong FPS provided: " + fpsNano);
             return;
         }
 
-        long interval = TimeUnit.NANOSECONDS.toMillis(fpsNano);
-        Logger.i("Update max interval: " + interval + ", provided nano by library: " + fpsNano);
+        Logger.i("Update max interval: %d ms, provided nano by library: %d", TimeUnit.NANOSECONDS.toMillis(fpsNano), fpsNano);
+
+        frameScheduler.setInterval(fpsNano);
+        wakeUp();
+    }
+
+    /**
+     * Report ticks, pushes and tick lateness to the given metrics.
+     */
+    public void setPipelineMetrics(PipelineMetrics pipelineMetrics) {
+        this.tickMetrics = pipelineMetrics.stage(PipelineMetrics.Stage.PROVIDE);
+    }
+
+    public FrameScheduler getFrameScheduler() {
+        return frameScheduler;
+    }
+
+    /**
+     * Content check to be done right before the frame is sent.
+     * Frames identical to the last pushed one are suppressed until keepalive interval elapses.
+     *
+     * @return true if frame has to be sent.
+     */
+    public boolean shouldPush(FrameHolder frame) {
+        final long now = System.nanoTime();
+        final boolean accepted = duplicateFrameFilter.accept(frame, now);
+
+        final RateCounter pushed = duplicateFrameFilter.getPushedFrames();
+        if (pushed.isSampleDue(now)) {
+            Logger.i("Pushed frames: %.1f/s, duplicates suppressed: %.1f/s, suppression ratio: %.2f, changed area: %.1f%%",
+                    pushed.sample(now), duplicateFrameFilter.getSuppressedFrames().sample(now), duplicateFrameFilter.getSuppressionRatio(),
+                    duplicateFrameFilter.getDirtyRegionDetector().getChangedArea());
+        }
+
+        return accepted;
+    }
+
+    public DuplicateFrameFilter getDuplicateFrameFilter() {
+        return duplicateFrameFilter;
+    }
+
+    @Override
+    public String getStageName() {
+        return "provider";
+    }
 
-        this.frameInterval = interval;
+    /**
+     * @return ticks skipped because the provider fell behind its deadlines.
+     */
+    @Override
+    public long getDroppedFrames() {
+        return frameScheduler.getSkippedTicks();
     }
 
+    /**
+     * Frame reference is taken over by provider and released once replaced by the next one.
+     */
     public void onFrameObtained(FrameHolder frame) {
-        this.lastAcquiredFrame = frame;
+        lastAcquiredFrame.publish(frame);
     }
 
-    public void destroy() {
+    public synchronized void destroy() {
         clearInterval();
+        releaseLastFrame();
 
-        this.handler = null;
+        this.isDestroyed = true;
         this.providerListener = null;
+        this.tickLane.shutdown();
+    }
+
+    /**
+     * Push if the deadline is due, then schedule the tick for the next one.
+     */
+    private void tick(Tick tick) {
+        final long wait = frameScheduler.timeToNextTick(clock.nanoTime());
+        if (wait <= 0) {
+            final StageMetrics metrics = tickMetrics;
+            metrics.countIn();
+            metrics.recordLatency(-wait);
+            if (pushFrame()) metrics.countOut();
+
+            final long skipped = frameScheduler.getSkippedTicks();
+            frameScheduler.advance(clock.nanoTime());
+            metrics.countDropped(frameScheduler.getSkippedTicks() - skipped);
+        }
+
+        scheduleNext(tick, frameScheduler.timeToNextTick(clock.nanoTime()));
+    }
+
+    /**
+     * @return true if a frame has been pushed.
+     */
+    private boolean pushFrame() {
+        final FrameProviderListener listener = this.providerListener;
+        if (listener == null) return false;
+
+        final FrameSupplier supplier = this.frameSupplier;
+        if (supplier != null) {
+            final FrameHolder fresh = supplier.obtainFrame();
+            if (fresh != null) onFrameObtained(fresh);
+        }
+
+        final FrameHolder frame = lastAcquiredFrame.acquire();
+        if (frame == null) return false;
+
+        listener.onPushFrame(frame);
+        return true;
+    }
+
+    /**
+     * Replace the running tick chain by a new one ticking right away, e.g. to pick up a new interval.
+     */
+    private synchronized void wakeUp() {
+        if (currentTick != null) startTicks();
     }
 
-    private void updateInterval() {
-        if (this.handler != null && this.isRunning) loop();
+    private synchronized void startTicks() {
+        cancelPendingTick();
+
+        final Tick tick = new Tick();
+        currentTick = tick;
+        scheduleNext(tick, 0);
     }
 
-    private void loop() {
-        long interval = TimeUnit.NANOSECONDS.toMillis(this.frameInterval);
-        this.handler.sendEmptyMessageDelayed(PUSH_FRAME_TAG, interval);
+    private synchronized void scheduleNext(Tick tick, long delayNanos) {
+        if (currentTick != tick) return;
+
+        try {
+            pendingTick = pipelineScheduler.schedule(tickLane, tick, delayNanos);
+        } catch (RejectedExecutionException e) {
+            Logger.w("Frame ticks stopped, scheduler is shut down");
+            currentTick = null;
+        }
     }
 
-    private void clearInterval() {
-        this.isRunning = false;
+    private void cancelPendingTick() {
+        final ScheduledFuture<?> pending = pendingTick;
+        pendingTick = null;
 
-        if (this.handler != null) {
-            this.handler.removeMessages(PUSH_FRAME_TAG);
+        if (pending != null) pending.cancel(false);
+    }
+
+    private void releaseLastFrame() {
+        lastAcquiredFrame.clear();
+    }
+
+    private synchronized void clearInterval() {
+        currentTick = null;
+        cancelPendingTick();
+    }
+
+    /**
+     * One tick chain. Ticks run one at a time on the lane, a tick of a replaced chain doesn't schedule the next one.
+     */
+    private final class Tick implements Runnable {
+
+        @Override
+        public void run() {
+            if (isCurrent(this)) tick(this);
         }
     }
+
+    private synchronized boolean isCurrent(Tick tick) {
+        return currentTick == tick;
+    }
 }
\ No newline at end of file
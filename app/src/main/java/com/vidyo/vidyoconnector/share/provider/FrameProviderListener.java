@@ -1,6 +1,6 @@
 package com.vidyo.vidyoconnector.share.provider;
 
-import androidx.annotation.MainThread;
+import androidx.annotation.WorkerThread;
 
 import com.vidyo.vidyoconnector.share.model.FrameHolder;
 
@@ -8,10 +8,11 @@ public interface FrameProviderListener {
 
     /**
      * Notify logic that frame has to be pushed by interval as FPS.
-     * Handle next action on background thread.
+     * Called on the provider thread, handle next action on background thread.
+     * Listener owns one reference to the frame and has to release it once the frame is sent.
      *
      * @param frameHolder {@link FrameHolder} frame to be pushed to remote.
      */
-    @MainThread
+    @WorkerThread
     void onPushFrame(FrameHolder frameHolder);
 }
\ No newline at end of file
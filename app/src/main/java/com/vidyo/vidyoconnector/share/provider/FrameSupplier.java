@@ -0,0 +1,16 @@
+package com.vidyo.vidyoconnector.share.provider;
+
+import androidx.annotation.WorkerThread;
+
+import com.vidyo.vidyoconnector.share.model.FrameHolder;
+
+public interface FrameSupplier {
+
+    /**
+     * Pull the newest frame right before a push, used when frames are produced on demand.
+     *
+     * @return new frame owned by the caller or null if nothing new has been captured.
+     */
+    @WorkerThread
+    FrameHolder obtainFrame();
+}
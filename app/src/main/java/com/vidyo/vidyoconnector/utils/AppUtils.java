@@ -6,10 +6,13 @@ import android.content.res.Configuration;
 import android.content.res.Resources;
 import android.net.Uri;
 import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
 
 import androidx.core.content.FileProvider;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.List;
 
 public class AppUtils {
@@ -17,66 +20,101 @@ public class AppUtils {
     private static final String LOGS_FOLDER = "VidyoConnectorLogs";
     private static final String LOG_FILE = "VidyoConnectorLog.log";
 
+    private static LogRotator logRotator;
+
     /**
-     * Log file is create individually for every session
+     * Log file is create individually for every session.
+     * Log of the previous session is kept compressed, logs are rolled into gzipped segments in background.
      *
      * @param context {@link Context}
      * @return log file path
      */
     public static String configLogFile(Context context) {
-        File cacheDir = context.getCacheDir();
-        File logDir = new File(cacheDir, LOGS_FOLDER);
-        deleteRecursive(logDir);
+        File logFile = logFile(context);
+        File logDir = logFile.getParentFile();
 
-        File logFile = new File(logDir, LOG_FILE);
-        logFile.mkdirs();
+        /* File with the same name is already being rolled when activity gets recreated */
+        if (logRotator == null) {
+            logRotator = new LogRotator(logFile);
+            logRotator.start();
+        }
 
         String[] logFiles = logDir.list();
         if (logFiles != null)
-            for (String file : logFiles) Logger.i(AppUtils.class, "Cached log file: " + file);
+            for (String file : logFiles) Logger.i(AppUtils.class, "Cached log file: %s", file);
 
         return logFile.getAbsolutePath();
     }
 
+    private static File logFile(Context context) {
+        return new File(new File(context.getCacheDir(), LOGS_FOLDER), LOG_FILE);
+    }
+
     /**
-     * Expose log file URI for sharing.
-     *
-     * @param context {@link Context}
-     * @return log file uri.
+     * Stop rolling logs once the app is done with the log file. Next {@link #configLogFile(Context)} starts over.
      */
-    private static Uri logFileUri(Context context) {
-        File cacheDir = context.getCacheDir();
-        File logDir = new File(cacheDir, LOGS_FOLDER);
-        File logFile = new File(logDir, LOG_FILE);
-
-        if (!logFile.exists()) return null;
+    public static void stopLogRotation() {
+        if (logRotator == null) return;
 
-        return FileProvider.getUriForFile(context, com.vidyo.vidyoconnector.BuildConfig.APPLICATION_ID + ".file.provider", logFile);
+        logRotator.stop();
+        logRotator = null;
     }
 
-    private static void deleteRecursive(File fileOrDirectory) {
-        if (fileOrDirectory.isDirectory())
-            for (File child : fileOrDirectory.listFiles())
-                deleteRecursive(child);
+    /**
+     * Expose log files URIs for sharing.
+     *
+     * @param context {@link Context}
+     * @return log files uris.
+     */
+    private static ArrayList<Uri> logFileUris(Context context, List<File> logFiles) {
+        final ArrayList<Uri> uris = new ArrayList<>();
+        for (File logFile : logFiles) {
+            uris.add(FileProvider.getUriForFile(context, com.vidyo.vidyoconnector.BuildConfig.APPLICATION_ID + ".file.provider", logFile));
+        }
 
-        fileOrDirectory.delete();
+        return uris;
     }
 
     /**
-     * Send email with log file
+     * Send email with compressed log segments. Only the part written since the last roll is compressed here,
+     * on the rotator thread. Without a running rotation, log files found on disk are sent as they are.
      */
     public static void sendLogs(Context context) {
-        Intent intent = new Intent(Intent.ACTION_SEND);
+        final LogRotator rotator = logRotator;
+        final Context appContext = context.getApplicationContext();
+
+        if (rotator == null) {
+            final List<File> logFiles = LogRotator.listLogFiles(logFile(appContext));
+            if (logFiles.isEmpty()) {
+                Logger.w(AppUtils.class, "No log files to send.");
+                return;
+            }
+
+            Logger.i(AppUtils.class, "Log rotation is not running, sending %d log files from disk", logFiles.size());
+            startSendLogs(appContext, logFiles);
+            return;
+        }
+
+        final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+        rotator.collectBundle(logFiles -> mainHandler.post(() -> startSendLogs(appContext, logFiles)));
+    }
+
+    private static void startSendLogs(Context context, List<File> logFiles) {
+        Intent intent = new Intent(Intent.ACTION_SEND_MULTIPLE);
         intent.setType("message/rfc822");
         intent.putExtra(Intent.EXTRA_SUBJECT, "Vidyo Connector Sample Logs");
         intent.putExtra(Intent.EXTRA_TEXT, "Logs attached..." + additionalInfo());
 
-        intent.putExtra(Intent.EXTRA_STREAM, logFileUri(context));
+        intent.putParcelableArrayListExtra(Intent.EXTRA_STREAM, logFileUris(context, logFiles));
+
+        intent.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
 
-        intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+        Intent chooser = Intent.createChooser(intent, "Choose sender...");
+        chooser.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
 
         try {
-            context.startActivity(Intent.createChooser(intent, "Choose sender..."));
+            context.startActivity(chooser);
         } catch (Exception sendReportEx) {
             sendReportEx.printStackTrace();
         }
@@ -0,0 +1,337 @@
+package com.vidyo.vidyoconnector.utils;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Roll a growing log file into gzipped segments on a background thread.
+ * <p>
+ * The active file is written by the library and can't be reopened, so it is never moved. Instead every roll
+ * streams the bytes appended since the previous roll into a new segment and remembers the offset, also across
+ * restarts. Once everything rolled exceeds the active file limit, the file is truncated in place. A writer not
+ * in append mode keeps writing at its old position, leaving a sparse hole of zeros at the start, which is skipped.
+ * Segments are rolled by size or age and the oldest ones are deleted above the retention limits. A bundle to share
+ * is therefore the existing segments plus one small tail segment.
+ */
+public class LogRotator {
+
+    /**
+     * Receives collected segments on the rotator thread.
+     */
+    public interface BundleCallback {
+
+        void onBundle(List<File> segments);
+    }
+
+    private static final String SEGMENT_SUFFIX = ".log.gz";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final String OFFSET_SUFFIX = ".offset";
+
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    public static final long DEFAULT_SEGMENT_BYTES = 4 * 1024 * 1024;
+    public static final long DEFAULT_SEGMENT_AGE_MILLIS = TimeUnit.MINUTES.toMillis(10);
+    public static final int DEFAULT_MAX_SEGMENTS = 50;
+    public static final long DEFAULT_MAX_TOTAL_BYTES = 32 * 1024 * 1024;
+    public static final long DEFAULT_MAX_ACTIVE_BYTES = 2 * DEFAULT_SEGMENT_BYTES;
+
+    private static final long CHECK_INTERVAL_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+    private final File directory;
+    private final File activeFile;
+    private final File offsetFile;
+    private final String segmentPrefix;
+
+    private final long segmentBytes;
+    private final long segmentAgeMillis;
+    private final int maxSegments;
+    private final long maxTotalBytes;
+    private final long maxActiveBytes;
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "LogRotator");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+    /* Rotator thread state */
+    private long rolledOffset;
+    private long lastRollTime;
+    private int nextSegment;
+
+    public LogRotator(File activeFile) {
+        this(activeFile, DEFAULT_SEGMENT_BYTES, DEFAULT_SEGMENT_AGE_MILLIS, DEFAULT_MAX_SEGMENTS, DEFAULT_MAX_TOTAL_BYTES);
+    }
+
+    public LogRotator(File activeFile, long segmentBytes, long segmentAgeMillis, int maxSegments, long maxTotalBytes) {
+        this(activeFile, segmentBytes, segmentAgeMillis, maxSegments, maxTotalBytes, DEFAULT_MAX_ACTIVE_BYTES);
+    }
+
+    /**
+     * @param maxActiveBytes active file is truncated once this many bytes of it have been rolled.
+     */
+    public LogRotator(File activeFile, long segmentBytes, long segmentAgeMillis, int maxSegments, long maxTotalBytes,
+                      long maxActiveBytes) {
+        this.activeFile = activeFile;
+        this.directory = activeFile.getParentFile();
+        this.offsetFile = new File(directory, activeFile.getName() + OFFSET_SUFFIX);
+
+        this.segmentPrefix = segmentPrefix(activeFile);
+
+        this.segmentBytes = segmentBytes;
+        this.segmentAgeMillis = segmentAgeMillis;
+        this.maxSegments = maxSegments;
+        this.maxTotalBytes = maxTotalBytes;
+        this.maxActiveBytes = maxActiveBytes;
+    }
+
+    /**
+     * Move the file left by the previous run aside and start periodic checks.
+     * Must be called before the active file is opened for writing.
+     */
+    public void start() {
+        directory.mkdirs();
+
+        final File previous = new File(directory, activeFile.getName() + ".previous");
+        final long previousOffset = readOffset();
+        final boolean hasPrevious = activeFile.length() > previousOffset && activeFile.renameTo(previous);
+
+        /* New active file starts from scratch */
+        offsetFile.delete();
+        if (!hasPrevious) activeFile.delete();
+
+        executor.execute(() -> {
+            nextSegment = findNextSegment();
+            lastRollTime = System.currentTimeMillis();
+
+            if (hasPrevious) {
+                try {
+                    writeSegment(previous, previousOffset, previous.length());
+                } catch (IOException e) {
+                    Logger.e(LogRotator.class, "Cannot compress previous log: " + e.getMessage());
+                }
+            }
+
+            previous.delete();
+            enforceRetention();
+        });
+
+        executor.scheduleWithFixedDelay(this::checkRoll, CHECK_INTERVAL_MILLIS, CHECK_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop periodic checks. Tasks already queued, like a requested bundle, still complete.
+     */
+    public void stop() {
+        executor.shutdown();
+    }
+
+    /**
+     * Roll whatever has been written since the last roll and list all segments, oldest first.
+     * After {@link #stop()} existing segments are listed right away on the calling thread.
+     *
+     * @param callback receives the segments on the rotator thread.
+     */
+    public void collectBundle(BundleCallback callback) {
+        try {
+            executor.execute(() -> {
+                roll();
+                callback.onBundle(listSegments());
+            });
+        } catch (RejectedExecutionException e) {
+            callback.onBundle(listSegments());
+        }
+    }
+
+    private void checkRoll() {
+        final long pending = activeFile.length() - rolledOffset;
+        if (pending <= 0) return;
+
+        if (pending >= segmentBytes || System.currentTimeMillis() - lastRollTime >= segmentAgeMillis) roll();
+    }
+
+    private void roll() {
+        final long size = activeFile.length();
+        /* File shorter than the offset has been recreated */
+        if (size < rolledOffset) rolledOffset = 0;
+
+        try {
+            if (size > rolledOffset) {
+                writeSegment(activeFile, rolledOffset, size);
+                rolledOffset = size;
+                lastRollTime = System.currentTimeMillis();
+                writeOffset(size);
+            }
+
+            if (rolledOffset >= maxActiveBytes) truncateActive();
+        } catch (IOException e) {
+            Logger.e(LogRotator.class, "Cannot roll log: " + e.getMessage());
+        }
+
+        enforceRetention();
+    }
+
+    /**
+     * Cut the active file to zero length, so that retention bounds the disk use. Bytes appended since the last roll
+     * are rolled right before, only a line written between that and the truncation itself can be lost.
+     */
+    private void truncateActive() throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(activeFile, "rw")) {
+            final long size = file.length();
+            if (size > rolledOffset) writeSegment(file, rolledOffset, size);
+
+            file.setLength(0);
+        }
+
+        rolledOffset = 0;
+        lastRollTime = System.currentTimeMillis();
+        writeOffset(0);
+    }
+
+    private void writeSegment(File source, long from, long to) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(source, "r")) {
+            writeSegment(file, from, to);
+        }
+    }
+
+    /**
+     * Stream bytes [from, to) of the source into a new gzipped segment. Leading zeros of a hole left
+     * by truncation are skipped, nothing is written if there's nothing else.
+     */
+    private void writeSegment(RandomAccessFile source, long from, long to) throws IOException {
+        final byte[] buffer = new byte[COPY_BUFFER_SIZE];
+        final long start = skipHole(source, from, to, buffer);
+        if (start >= to) return;
+
+        final File segment = new File(directory, String.format(Locale.US, "%s%06d%s", segmentPrefix, nextSegment++, SEGMENT_SUFFIX));
+        final File temp = new File(directory, segment.getName() + TEMP_SUFFIX);
+
+        try (OutputStream output = new GZIPOutputStream(new FileOutputStream(temp), COPY_BUFFER_SIZE)) {
+            source.seek(start);
+
+            long remaining = to - start;
+            while (remaining > 0) {
+                final int read = source.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (read < 0) break;
+
+                output.write(buffer, 0, read);
+                remaining -= read;
+            }
+        } catch (IOException e) {
+            temp.delete();
+            throw e;
+        }
+
+        /* Segment becomes visible only once complete */
+        if (!temp.renameTo(segment)) {
+            temp.delete();
+            throw new IOException("Cannot rename " + temp + " to " + segment);
+        }
+    }
+
+    /**
+     * @return position of the first non-zero byte in [from, to), or to if there's none.
+     */
+    private static long skipHole(RandomAccessFile source, long from, long to, byte[] buffer) throws IOException {
+        source.seek(from);
+
+        long position = from;
+        while (position < to) {
+            final int read = source.read(buffer, 0, (int) Math.min(buffer.length, to - position));
+            if (read < 0) return to;
+
+            for (int i = 0; i < read; i++) {
+                if (buffer[i] != 0) return position + i;
+            }
+            position += read;
+        }
+
+        return to;
+    }
+
+    private void enforceRetention() {
+        final List<File> segments = listSegments();
+
+        long total = 0;
+        for (File segment : segments) total += segment.length();
+
+        for (int i = 0; i < segments.size() && (segments.size() - i > maxSegments || total > maxTotalBytes); i++) {
+            final File oldest = segments.get(i);
+            total -= oldest.length();
+            oldest.delete();
+        }
+    }
+
+    /**
+     * Log files on disk when no rotator is running, e.g. after {@link #stop()}: all segments, oldest first,
+     * followed by the active file unless it's empty. Bytes of the active file rolled already are in both.
+     */
+    public static List<File> listLogFiles(File activeFile) {
+        final List<File> files = listSegments(activeFile.getParentFile(), segmentPrefix(activeFile));
+        if (activeFile.length() > 0) files.add(activeFile);
+        return files;
+    }
+
+    /**
+     * @return complete segments, oldest first.
+     */
+    private List<File> listSegments() {
+        return listSegments(directory, segmentPrefix);
+    }
+
+    private static List<File> listSegments(File directory, String segmentPrefix) {
+        final File[] files = directory.listFiles((dir, name) -> name.startsWith(segmentPrefix) && name.endsWith(SEGMENT_SUFFIX));
+        if (files == null) return new ArrayList<>();
+
+        Arrays.sort(files);
+        return new ArrayList<>(Arrays.asList(files));
+    }
+
+    private static String segmentPrefix(File activeFile) {
+        final String name = activeFile.getName();
+        final int extension = name.lastIndexOf('.');
+        return (extension > 0 ? name.substring(0, extension) : name) + ".";
+    }
+
+    private int findNextSegment() {
+        final List<File> segments = listSegments();
+        if (segments.isEmpty()) return 0;
+
+        final String last = segments.get(segments.size() - 1).getName();
+        try {
+            return Integer.parseInt(last.substring(segmentPrefix.length(), last.length() - SEGMENT_SUFFIX.length())) + 1;
+        } catch (NumberFormatException e) {
+            return segments.size();
+        }
+    }
+
+    private long readOffset() {
+        try (BufferedReader reader = new BufferedReader(new FileReader(offsetFile))) {
+            return Long.parseLong(reader.readLine().trim());
+        } catch (IOException | RuntimeException e) {
+            return 0;
+        }
+    }
+
+    private void writeOffset(long offset) throws IOException {
+        try (FileWriter writer = new FileWriter(offsetFile)) {
+            writer.write(Long.toString(offset));
+        }
+    }
+}
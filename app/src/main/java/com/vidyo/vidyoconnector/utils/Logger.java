@@ -4,6 +4,21 @@ import android.util.Log;
 
 import com.vidyo.vidyoconnector.BuildConfig;
 
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Asynchronous logger.
+ * <p>
+ * Calls only check the level and put message and arguments into a preallocated lock-free ring, formatting and
+ * output happen on a background writer thread. Nothing is done when logging is disabled. If the ring is full
+ * the record is dropped rather than blocking the caller.
+ * <p>
+ * Arguments are formatted on the writer thread, so mutable objects are printed with their state at that time.
+ * Fixed arity methods avoid varargs allocation, primitives are still boxed at the call site.
+ */
 public class Logger {
 
     public enum LogType {
@@ -14,53 +29,80 @@ public class Logger {
 
     private static final String TAG = "VidyoConnector";
 
+    private static final int RING_CAPACITY = 1024;
+
+    private static final LogRing RING = ENABLED ? new LogRing(RING_CAPACITY) : null;
+
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
     public static void e(String error) {
-        log(null, error, LogType.ERROR);
+        if (ENABLED) RING.publish(LogType.ERROR, null, error, 0, null, null, null, null);
     }
 
     public static void e(Class cls, String error) {
-        log(cls, error, LogType.ERROR);
+        if (ENABLED) RING.publish(LogType.ERROR, cls, error, 0, null, null, null, null);
+    }
+
+    /**
+     * Error followed by the stack trace of the throwable, which is printed on the writer thread.
+     */
+    public static void e(String error, Throwable throwable) {
+        if (ENABLED) RING.publish(LogType.ERROR, null, error, 0, null, null, null, null, throwable);
     }
 
     public static void i(String info) {
-        log(null, info, LogType.INFO);
+        if (ENABLED) RING.publish(LogType.INFO, null, info, 0, null, null, null, null);
     }
 
     public static void i(Class cls, String info) {
-        log(cls, info, LogType.INFO);
+        if (ENABLED) RING.publish(LogType.INFO, cls, info, 0, null, null, null, null);
+    }
+
+    public static void i(String format, Object arg) {
+        if (ENABLED) RING.publish(LogType.INFO, null, format, 1, arg, null, null, null);
+    }
+
+    public static void i(String format, Object arg1, Object arg2) {
+        if (ENABLED) RING.publish(LogType.INFO, null, format, 2, arg1, arg2, null, null);
+    }
+
+    public static void i(String format, Object arg1, Object arg2, Object arg3) {
+        if (ENABLED) RING.publish(LogType.INFO, null, format, 3, arg1, arg2, arg3, null);
     }
 
     public static void i(Class cls, String info, Object... params) {
-        log(cls, String.format(info, params), LogType.INFO);
+        if (ENABLED) RING.publish(LogType.INFO, cls, info, params.length, null, null, null, params);
     }
 
     public static void i(String info, Object... params) {
-        log(null, String.format(info, params), LogType.INFO);
+        if (ENABLED) RING.publish(LogType.INFO, null, info, params.length, null, null, null, params);
     }
 
     public static void w(String warning) {
-        log(null, warning, LogType.WARNING);
+        if (ENABLED) RING.publish(LogType.WARNING, null, warning, 0, null, null, null, null);
     }
 
     public static void w(Class cls, String warning) {
-        log(cls, warning, LogType.WARNING);
+        if (ENABLED) RING.publish(LogType.WARNING, cls, warning, 0, null, null, null, null);
     }
 
-    private static void log(Class cls, String message, LogType logType) {
-        StringBuilder builder = new StringBuilder();
-        if (cls != null) {
-            builder.append(cls.getSimpleName());
-            builder.append(": ");
-        }
-
-        if (message != null) {
-            builder.append(message);
-        }
-
-        String out = builder.toString();
+    /**
+     * Write all records logged so far on the calling thread, e.g. before logs are collected.
+     */
+    public static void flush() {
+        if (ENABLED) RING.drain();
+    }
 
-        if (!ENABLED) return;
+    /**
+     * @return records dropped because the writer couldn't keep up.
+     */
+    public static long getDroppedRecords() {
+        return ENABLED ? RING.dropped.get() : 0;
+    }
 
+    private static void write(LogType logType, String out) {
         switch (logType) {
             case ERROR:
                 Log.e(TAG, out);
@@ -73,4 +115,165 @@ public class Logger {
                 break;
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Preallocated record, reused once the writer is done with it.
+     */
+    private static final class LogRecord {
+
+        /* Sequence the record holds, published last by the producer */
+        volatile long sequence = -1;
+
+        LogType type;
+        Class cls;
+        String message;
+        int argCount;
+        Object arg1;
+        Object arg2;
+        Object arg3;
+        Object[] args;
+        Throwable throwable;
+
+        void clear() {
+            cls = null;
+            message = null;
+            arg1 = arg2 = arg3 = null;
+            args = null;
+            throwable = null;
+        }
+    }
+
+    /**
+     * Multi-producer, single-consumer ring of log records.
+     */
+    private static final class LogRing {
+
+        private final LogRecord[] records;
+        private final int mask;
+
+        private final AtomicLong tail = new AtomicLong();
+        private volatile long head;
+        final AtomicLong dropped = new AtomicLong();
+
+        private final Thread writer;
+        /* Set while the writer is about to park or parked, producers wake it up then */
+        private volatile boolean writerParked;
+
+        /* Writer side state, used by the writer thread or flush under the ring lock */
+        private final StringBuilder builder = new StringBuilder();
+        private final Object[][] argArrays = {new Object[0], new Object[1], new Object[2], new Object[3]};
+
+        LogRing(int capacity) {
+            records = new LogRecord[capacity];
+            for (int i = 0; i < capacity; i++) records[i] = new LogRecord();
+            mask = capacity - 1;
+
+            writer = new Thread(this::writeLoop, "LoggerWriter");
+            writer.setDaemon(true);
+            writer.setPriority(Thread.MIN_PRIORITY);
+            writer.start();
+        }
+
+        void publish(LogType type, Class cls, String message, int argCount, Object arg1, Object arg2, Object arg3, Object[] args) {
+            publish(type, cls, message, argCount, arg1, arg2, arg3, args, null);
+        }
+
+        void publish(LogType type, Class cls, String message, int argCount, Object arg1, Object arg2, Object arg3, Object[] args,
+                     Throwable throwable) {
+            long sequence;
+            do {
+                sequence = tail.get();
+                if (sequence - head >= records.length) {
+                    dropped.incrementAndGet();
+                    return;
+                }
+            } while (!tail.compareAndSet(sequence, sequence + 1));
+
+            final LogRecord record = records[(int) sequence & mask];
+            record.type = type;
+            record.cls = cls;
+            record.message = message;
+            record.argCount = argCount;
+            record.arg1 = arg1;
+            record.arg2 = arg2;
+            record.arg3 = arg3;
+            record.args = args;
+            record.throwable = throwable;
+            record.sequence = sequence;
+
+            if (writerParked) LockSupport.unpark(writer);
+        }
+
+        private void writeLoop() {
+            while (true) {
+                if (drain()) continue;
+
+                /* Flag is raised before the ring is checked again, a record published meanwhile either
+                   is seen here or its producer sees the flag and unparks the writer */
+                writerParked = true;
+                if (!hasPending()) LockSupport.park(this);
+                writerParked = false;
+            }
+        }
+
+        private boolean hasPending() {
+            final long sequence = head;
+            return records[(int) sequence & mask].sequence == sequence;
+        }
+
+        /**
+         * @return true if anything has been written.
+         */
+        synchronized boolean drain() {
+            boolean written = false;
+
+            while (true) {
+                final long sequence = head;
+                final LogRecord record = records[(int) sequence & mask];
+                /* Empty or the producer hasn't finished filling the record yet */
+                if (record.sequence != sequence) return written;
+
+                try {
+                    write(record.type, format(record));
+                } catch (RuntimeException e) {
+                    write(LogType.ERROR, "Cannot format log message \"" + record.message + "\": " + e);
+                }
+
+                record.clear();
+                head = sequence + 1;
+                written = true;
+            }
+        }
+
+        private String format(LogRecord record) {
+            builder.setLength(0);
+            if (record.cls != null) builder.append(record.cls.getSimpleName()).append(": ");
+
+            if (record.message != null) {
+                if (record.argCount == 0) {
+                    builder.append(record.message);
+                } else {
+                    builder.append(String.format(record.message, arguments(record)));
+                }
+            }
+
+            if (record.throwable != null) {
+                final StringWriter stackTrace = new StringWriter();
+                record.throwable.printStackTrace(new PrintWriter(stackTrace));
+                builder.append('\n').append(stackTrace);
+            }
+
+            return builder.toString();
+        }
+
+        private Object[] arguments(LogRecord record) {
+            if (record.args != null) return record.args;
+
+            final Object[] arguments = argArrays[record.argCount];
+            if (record.argCount > 0) arguments[0] = record.arg1;
+            if (record.argCount > 1) arguments[1] = record.arg2;
+            if (record.argCount > 2) arguments[2] = record.arg3;
+            return arguments;
+        }
+    }
+}
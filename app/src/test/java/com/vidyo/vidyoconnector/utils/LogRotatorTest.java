@@ -0,0 +1,199 @@
+package com.vidyo.vidyoconnector.utils;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LogRotatorTest {
+
+    private static final long LARGE = Long.MAX_VALUE / 4;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<LogRotator> rotators = new ArrayList<>();
+
+    @After
+    public void stopRotators() {
+        for (LogRotator rotator : rotators) rotator.stop();
+    }
+
+    @Test
+    public void bundleRollsBytesAppendedSinceLastRoll() throws Exception {
+        final File active = activeFile();
+        final LogRotator rotator = start(active, 10, LARGE, LARGE);
+
+        append(active, "first\n");
+        List<File> segments = collect(rotator);
+        assertEquals(1, segments.size());
+        assertEquals("first\n", gunzip(segments.get(0)));
+
+        append(active, "second\n");
+        segments = collect(rotator);
+        assertEquals(2, segments.size());
+        assertEquals("second\n", gunzip(segments.get(1)));
+
+        /* Nothing new, nothing rolled */
+        assertEquals(2, collect(rotator).size());
+    }
+
+    @Test
+    public void previousRunIsCompressedOnStart() throws Exception {
+        final File active = activeFile();
+        append(active, "previous run\n");
+
+        final LogRotator rotator = start(active, 10, LARGE, LARGE);
+        append(active, "this run\n");
+
+        final List<File> segments = collect(rotator);
+        assertEquals(2, segments.size());
+        assertEquals("previous run\n", gunzip(segments.get(0)));
+        assertEquals("this run\n", gunzip(segments.get(1)));
+    }
+
+    @Test
+    public void activeFileIsTruncatedAboveLimit() throws Exception {
+        final File active = activeFile();
+        final LogRotator rotator = start(active, 10, LARGE, 64);
+
+        final String text = repeat("line of log\n", 10);
+        append(active, text);
+
+        final List<File> segments = collect(rotator);
+        assertEquals(0, active.length());
+        assertEquals(text, gunzip(segments.get(0)));
+
+        append(active, "after truncation\n");
+        assertEquals("after truncation\n", gunzip(last(collect(rotator))));
+    }
+
+    @Test
+    public void holeLeftByWriterWithoutAppendIsSkipped() throws Exception {
+        final File active = activeFile();
+        final LogRotator rotator = start(active, 10, LARGE, 64);
+
+        /* Writer keeps its own position, like a log opened without append mode */
+        try (RandomAccessFile writer = new RandomAccessFile(active, "rw")) {
+            writer.write(repeat("before truncation\n", 10).getBytes(StandardCharsets.US_ASCII));
+            collect(rotator);
+            assertEquals(0, active.length());
+
+            writer.write("after truncation\n".getBytes(StandardCharsets.US_ASCII));
+        }
+
+        assertEquals("after truncation\n", gunzip(last(collect(rotator))));
+    }
+
+    @Test
+    public void oldestSegmentsAreDeletedAboveRetention() throws Exception {
+        final File active = activeFile();
+        final LogRotator rotator = start(active, 2, LARGE, LARGE);
+
+        for (int i = 0; i < 4; i++) {
+            append(active, "segment " + i + "\n");
+            collect(rotator);
+        }
+
+        final List<File> segments = collect(rotator);
+        assertEquals(2, segments.size());
+        assertEquals("segment 2\n", gunzip(segments.get(0)));
+        assertEquals("segment 3\n", gunzip(segments.get(1)));
+    }
+
+    @Test
+    public void bundleAfterStopListsExistingSegments() throws Exception {
+        final File active = activeFile();
+        final LogRotator rotator = start(active, 10, LARGE, LARGE);
+        append(active, "line\n");
+        collect(rotator);
+
+        rotator.stop();
+        assertEquals(1, collect(rotator).size());
+    }
+
+    @Test
+    public void logFilesAreListedWithoutRotator() throws Exception {
+        final File active = activeFile();
+        assertTrue(LogRotator.listLogFiles(active).isEmpty());
+
+        final LogRotator rotator = start(active, 10, LARGE, LARGE);
+        append(active, "rolled\n");
+        collect(rotator);
+        rotator.stop();
+        append(active, "not rolled\n");
+
+        final List<File> files = LogRotator.listLogFiles(active);
+        assertEquals(2, files.size());
+        assertEquals("rolled\n", gunzip(files.get(0)));
+        assertEquals(active, files.get(1));
+    }
+
+    private File activeFile() {
+        return new File(folder.getRoot(), "logs/app.log");
+    }
+
+    private LogRotator start(File active, int maxSegments, long maxTotalBytes, long maxActiveBytes) {
+        final LogRotator rotator = new LogRotator(active, LARGE, TimeUnit.DAYS.toMillis(1), maxSegments, maxTotalBytes, maxActiveBytes);
+        rotators.add(rotator);
+        rotator.start();
+        return rotator;
+    }
+
+    private static List<File> collect(LogRotator rotator) throws InterruptedException {
+        final CountDownLatch done = new CountDownLatch(1);
+        final List<File> result = new ArrayList<>();
+
+        rotator.collectBundle(segments -> {
+            result.addAll(segments);
+            done.countDown();
+        });
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        return result;
+    }
+
+    private static void append(File file, String text) throws IOException {
+        file.getParentFile().mkdirs();
+        try (FileOutputStream output = new FileOutputStream(file, true)) {
+            output.write(text.getBytes(StandardCharsets.US_ASCII));
+        }
+    }
+
+    private static String gunzip(File segment) throws IOException {
+        try (InputStream input = new GZIPInputStream(new FileInputStream(segment))) {
+            final ByteArrayOutputStream output = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[4096];
+            int read;
+            while ((read = input.read(buffer)) > 0) output.write(buffer, 0, read);
+            return new String(output.toByteArray(), StandardCharsets.US_ASCII);
+        }
+    }
+
+    private static File last(List<File> segments) {
+        return segments.get(segments.size() - 1);
+    }
+
+    private static String repeat(String text, int times) {
+        final StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < times; i++) builder.append(text);
+        return builder.toString();
+    }
+}
@@ -0,0 +1,52 @@
+package com.vidyo.vidyoconnector.utils;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertTrue;
+
+public class LoggerTest {
+
+    /**
+     * Argument counting down when the writer thread formats it.
+     */
+    private static final class Probe {
+
+        private final CountDownLatch formatted = new CountDownLatch(1);
+
+        @Override
+        public String toString() {
+            formatted.countDown();
+            return "probe";
+        }
+    }
+
+    @Test
+    public void idleWriterWakesUpForNewRecord() throws Exception {
+        Assume.assumeTrue(Logger.isEnabled());
+
+        for (int i = 0; i < 5; i++) {
+            /* Long enough for the writer to drain the ring and park */
+            Thread.sleep(50);
+
+            final Probe probe = new Probe();
+            Logger.i("Probe %s", probe);
+            assertTrue("Record " + i + " not written", probe.formatted.await(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void noRecordIsLeftBehindWhileWriterParks() throws Exception {
+        Assume.assumeTrue(Logger.isEnabled());
+
+        /* Publish right as the writer runs out of records, a lost wakeup leaves the record unwritten */
+        for (int i = 0; i < 2000; i++) {
+            final Probe probe = new Probe();
+            Logger.i("Probe %s", probe);
+            assertTrue("Record " + i + " not written", probe.formatted.await(5, TimeUnit.SECONDS));
+        }
+    }
+}
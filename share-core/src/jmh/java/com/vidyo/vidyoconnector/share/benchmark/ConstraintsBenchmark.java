@@ -0,0 +1,53 @@
+package com.vidyo.vidyoconnector.share.benchmark;
+
+import com.vidyo.vidyoconnector.share.model.FrameHolder;
+import com.vidyo.vidyoconnector.share.model.ShareConstraints;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-frame constraints check done by the sender and their recomputation on size change.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConstraintsBenchmark {
+
+    @Param({"1280x720", "1920x1080", "2560x1440", "3840x2160"})
+    public String resolution;
+
+    private ShareConstraints constraints;
+    private FrameHolder frame;
+
+    @Setup
+    public void setUp() {
+        final String[] size = resolution.split("x");
+        frame = new FrameHolder(new byte[0], Integer.parseInt(size[0]), Integer.parseInt(size[1]), 0);
+        constraints = new ShareConstraints(frame.width, frame.height);
+    }
+
+    @Benchmark
+    public boolean shouldUpdate() {
+        return ShareConstraints.shouldUpdateConstraints(constraints, frame);
+    }
+
+    @Benchmark
+    public ShareConstraints recompute() {
+        return new ShareConstraints(frame.width, frame.height);
+    }
+}
@@ -0,0 +1,87 @@
+package com.vidyo.vidyoconnector.share.benchmark;
+
+import com.vidyo.vidyoconnector.share.model.FrameHolder;
+import com.vidyo.vidyoconnector.share.model.FramePool;
+import com.vidyo.vidyoconnector.share.transform.FrameCopier;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Image plane to frame copy.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CopyBenchmark {
+
+    private final FramePool framePool = new FramePool();
+    private byte[] output;
+
+    @Setup
+    public void setUp(FrameState frame) {
+        output = new byte[FrameCopier.packedSize(frame.width, frame.height)];
+    }
+
+    @Benchmark
+    public byte[] strideCopy(FrameState frame) {
+        FrameCopier.copy(frame.plane, frame.rowStride, FrameCopier.RGBA_PIXEL_STRIDE, frame.width, frame.height, output);
+        return output;
+    }
+
+    /**
+     * Region of interest covering the left half of the screen, copied straight out of the plane.
+     */
+    @Benchmark
+    public byte[] halfCropCopy(FrameState frame) {
+        FrameCopier.copy(frame.plane, frame.rowStride, FrameCopier.RGBA_PIXEL_STRIDE, 0, 0, frame.width / 2, frame.height, output);
+        return output;
+    }
+
+    @Benchmark
+    public FrameHolder pooledStrideCopy(FrameState frame) {
+        final FrameHolder holder = framePool.lease(output.length, frame.width, frame.height, 0);
+        FrameCopier.copy(frame.plane, frame.rowStride, FrameCopier.RGBA_PIXEL_STRIDE, frame.width, frame.height, holder.byteArray);
+        holder.release();
+        return holder;
+    }
+
+    /**
+     * Baseline: memory traffic of the former Bitmap based conversion, which can't run off device.
+     * Padded plane was copied into a freshly allocated bitmap, cropped into another one if rows were padded
+     * and copied once more into a freshly allocated array.
+     */
+    @Benchmark
+    public byte[] bitmapBaseline(FrameState frame) {
+        final ByteBuffer plane = frame.plane.duplicate();
+        final byte[] bitmap = new byte[frame.rowStride * frame.height];
+        plane.get(bitmap);
+
+        byte[] cropped = bitmap;
+        if (frame.rowPadding > 0) {
+            final int rowBytes = frame.width * FrameCopier.RGBA_PIXEL_STRIDE;
+            cropped = new byte[rowBytes * frame.height];
+            for (int row = 0; row < frame.height; row++) {
+                System.arraycopy(bitmap, row * frame.rowStride, cropped, row * rowBytes, rowBytes);
+            }
+        }
+
+        final ByteBuffer result = ByteBuffer.allocate(cropped.length);
+        result.put(cropped);
+        return result.array();
+    }
+}
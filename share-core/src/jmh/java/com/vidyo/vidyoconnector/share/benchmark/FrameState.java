@@ -0,0 +1,60 @@
+package com.vidyo.vidyoconnector.share.benchmark;
+
+import com.vidyo.vidyoconnector.share.model.ShareConstraints;
+import com.vidyo.vidyoconnector.share.transform.FrameCopier;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+/**
+ * Captured frame as delivered by the image reader: RGBA plane with optional row padding, plus its packed copy.
+ */
+@State(Scope.Thread)
+public class FrameState {
+
+    @Param({"1280x720", "1920x1080", "2560x1440", "3840x2160"})
+    public String resolution;
+
+    /* Bytes added to every row by the reader, 0 for tightly packed planes */
+    @Param({"0", "256"})
+    public int rowPadding;
+
+    public int width;
+    public int height;
+    public int rowStride;
+
+    /* Scaling target: max constraints if the frame exceeds them, otherwise the min ones, so it's never a no-op */
+    public int scaledWidth;
+    public int scaledHeight;
+
+    public ByteBuffer plane;
+    public byte[] packed;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        final String[] size = resolution.split("x");
+        width = Integer.parseInt(size[0]);
+        height = Integer.parseInt(size[1]);
+        rowStride = width * FrameCopier.RGBA_PIXEL_STRIDE + rowPadding;
+
+        final byte[] content = new byte[rowStride * height];
+        new Random(42).nextBytes(content);
+
+        plane = ByteBuffer.allocateDirect(content.length);
+        plane.put(content).flip();
+
+        packed = new byte[FrameCopier.packedSize(width, height)];
+        FrameCopier.copy(plane, rowStride, FrameCopier.RGBA_PIXEL_STRIDE, width, height, packed);
+
+        final ShareConstraints constraints = new ShareConstraints(width, height);
+        final boolean fits = constraints.maxWidth == width && constraints.maxHeight == height;
+        scaledWidth = fits ? constraints.minWidth : constraints.maxWidth;
+        scaledHeight = fits ? constraints.minHeight : constraints.maxHeight;
+    }
+}
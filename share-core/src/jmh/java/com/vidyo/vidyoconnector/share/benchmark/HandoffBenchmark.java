@@ -0,0 +1,76 @@
+package com.vidyo.vidyoconnector.share.benchmark;
+
+import com.vidyo.vidyoconnector.share.model.FrameHolder;
+import com.vidyo.vidyoconnector.share.provider.FrameExchange;
+import com.vidyo.vidyoconnector.share.provider.LatestFrameMailbox;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latest wins handoffs under contention: one producer against one consumer.
+ * Every posted frame is a new holder over a shared buffer, the way the pool hands them out.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HandoffBenchmark {
+
+    private final byte[] buffer = new byte[64];
+
+    private final LatestFrameMailbox mailbox = new LatestFrameMailbox();
+    private final FrameExchange exchange = new FrameExchange();
+
+    @Benchmark
+    @Group("mailbox")
+    @GroupThreads(1)
+    public boolean mailboxPost() {
+        return mailbox.post(new FrameHolder(buffer, 4, 4, 0));
+    }
+
+    @Benchmark
+    @Group("mailbox")
+    @GroupThreads(1)
+    public FrameHolder mailboxPoll() {
+        final FrameHolder frame = mailbox.poll();
+        if (frame != null) frame.release();
+        return frame;
+    }
+
+    @Benchmark
+    @Group("exchange")
+    @GroupThreads(1)
+    public void exchangePublish() {
+        exchange.publish(new FrameHolder(buffer, 4, 4, 0));
+    }
+
+    @Benchmark
+    @Group("exchange")
+    @GroupThreads(1)
+    public FrameHolder exchangeAcquire() {
+        final FrameHolder frame = exchange.acquire();
+        if (frame != null) frame.release();
+        return frame;
+    }
+
+    @TearDown
+    public void tearDown() {
+        mailbox.clear();
+        exchange.clear();
+    }
+}
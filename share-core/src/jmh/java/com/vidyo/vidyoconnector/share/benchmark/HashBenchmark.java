@@ -0,0 +1,74 @@
+package com.vidyo.vidyoconnector.share.benchmark;
+
+import com.vidyo.vidyoconnector.share.model.FrameHolder;
+import com.vidyo.vidyoconnector.share.provider.DuplicateFrameFilter;
+import com.vidyo.vidyoconnector.share.transform.DirtyRegionDetector;
+import com.vidyo.vidyoconnector.share.transform.FrameCopier;
+import com.vidyo.vidyoconnector.share.transform.FrameHasher;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Duplicate frame detection on the calling thread.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HashBenchmark {
+
+    private static final int SAMPLED_ROW_STEP = 4;
+
+    private final DirtyRegionDetector dirtyRegionDetector = new DirtyRegionDetector();
+    private final DuplicateFrameFilter duplicateFrameFilter = new DuplicateFrameFilter();
+
+    private FrameHolder frame;
+    private FrameHolder copy;
+    private long now;
+
+    @Setup
+    public void setUp(FrameState state) {
+        frame = new FrameHolder(state.packed, state.width, state.height, 0);
+        /* Different object with the same content, so the filter has to look at the pixels */
+        copy = new FrameHolder(state.packed.clone(), state.width, state.height, 0);
+        duplicateFrameFilter.setKeepAliveInterval(Long.MAX_VALUE);
+    }
+
+    @Benchmark
+    public long fullHash() {
+        return FrameHasher.hash(frame.byteArray, 0, frame.byteArray.length, 0);
+    }
+
+    @Benchmark
+    public long sampledHash() {
+        return FrameHasher.hashSampled(frame.byteArray, frame.width * FrameCopier.RGBA_PIXEL_STRIDE, frame.height, SAMPLED_ROW_STEP);
+    }
+
+    @Benchmark
+    public int dirtyTiles() {
+        dirtyRegionDetector.detect(frame);
+        return dirtyRegionDetector.getDirtyTileCount();
+    }
+
+    /**
+     * Unchanged content in alternating frame objects, the common case of a static screen.
+     */
+    @Benchmark
+    public boolean duplicateFilter() {
+        final FrameHolder next = (now & 1) == 0 ? frame : copy;
+        return duplicateFrameFilter.accept(next, ++now);
+    }
+}
@@ -0,0 +1,98 @@
+package com.vidyo.vidyoconnector.share.benchmark;
+
+import com.vidyo.vidyoconnector.share.model.FrameHolder;
+import com.vidyo.vidyoconnector.share.model.FramePool;
+import com.vidyo.vidyoconnector.share.record.FrameRecorder;
+import com.vidyo.vidyoconnector.share.record.FrameRecording;
+import com.vidyo.vidyoconnector.share.source.SyntheticFrameSource;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sequential decode of a recording, the per-frame cost of a replay source.
+ * A recording made on device can be passed with -p recording=path, otherwise synthetic content is recorded.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReplayBenchmark {
+
+    private static final int SYNTHETIC_FRAMES = 60;
+    private static final int SYNTHETIC_FPS = 30;
+
+    @Param({""})
+    public String recording;
+
+    @Param({"false", "true"})
+    public boolean tileCompression;
+
+    @Param({"1920x1080"})
+    public String resolution;
+
+    private final FramePool framePool = new FramePool();
+
+    private File recordingFile;
+    private boolean temporary;
+    private FrameRecording frameRecording;
+    private int frameIndex;
+
+    @Setup
+    public void setUp() throws IOException {
+        temporary = recording.isEmpty();
+        recordingFile = temporary ? recordSynthetic() : new File(recording);
+        frameRecording = FrameRecording.open(recordingFile);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        frameRecording.close();
+        if (temporary && !recordingFile.delete()) recordingFile.deleteOnExit();
+    }
+
+    @Benchmark
+    public FrameHolder decodeNext() {
+        final FrameHolder frame = frameRecording.decode(frameIndex, framePool, 0);
+        frame.release();
+
+        frameIndex = (frameIndex + 1) % frameRecording.getFrameCount();
+        return frame;
+    }
+
+    /**
+     * Scrolling text alternating with pauses, so tile frames are mixed with raw ones.
+     */
+    private File recordSynthetic() throws IOException {
+        final String[] size = resolution.split("x");
+        final SyntheticFrameSource source = new SyntheticFrameSource(framePool, SyntheticFrameSource.Pattern.SCROLLING_TEXT,
+                Integer.parseInt(size[0]), Integer.parseInt(size[1]), 0, SYNTHETIC_FPS);
+
+        final File file = File.createTempFile("share-replay", ".vsfr");
+        try (FrameRecorder recorder = new FrameRecorder(file, tileCompression)) {
+            for (int i = 0; i < SYNTHETIC_FRAMES; i++) {
+                final FrameHolder frame = source.produceFrame(i / 4);
+                recorder.record(frame);
+                frame.release();
+            }
+        }
+
+        return file;
+    }
+}
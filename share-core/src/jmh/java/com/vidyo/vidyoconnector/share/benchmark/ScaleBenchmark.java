@@ -0,0 +1,81 @@
+package com.vidyo.vidyoconnector.share.benchmark;
+
+import com.vidyo.vidyoconnector.share.model.FrameHolder;
+import com.vidyo.vidyoconnector.share.model.FramePool;
+import com.vidyo.vidyoconnector.share.transform.ConstraintScaler;
+import com.vidyo.vidyoconnector.share.transform.FrameCopier;
+import com.vidyo.vidyoconnector.share.transform.FrameScaler;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Downscale to share constraints on the calling thread, compared with pushing the frame unscaled.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScaleBenchmark {
+
+    private final FramePool framePool = new FramePool();
+    private final FrameScaler frameScaler = new FrameScaler();
+    private final ConstraintScaler constraintScaler = new ConstraintScaler(framePool, null);
+
+    private int dstWidth;
+    private int dstHeight;
+    private byte[] output;
+    private byte[] unscaled;
+
+    @Setup
+    public void setUp(FrameState frame) {
+        dstWidth = frame.scaledWidth;
+        dstHeight = frame.scaledHeight;
+        output = new byte[FrameCopier.packedSize(dstWidth, dstHeight)];
+        unscaled = new byte[frame.packed.length];
+    }
+
+    @Benchmark
+    public byte[] bilinear(FrameState frame) {
+        frameScaler.scale(frame.packed, frame.width, frame.height, output, dstWidth, dstHeight, FrameScaler.Filter.BILINEAR);
+        return output;
+    }
+
+    @Benchmark
+    public byte[] box(FrameState frame) {
+        frameScaler.scale(frame.packed, frame.width, frame.height, output, dstWidth, dstHeight, FrameScaler.Filter.BOX);
+        return output;
+    }
+
+    /**
+     * Whole prepare stage: filter selection, pooled output and scaling. Frames within constraints pass through.
+     */
+    @Benchmark
+    public FrameHolder constraintScaler(FrameState frame) {
+        final FrameHolder input = framePool.lease(frame.packed.length, frame.width, frame.height, 0);
+        final FrameHolder scaled = constraintScaler.apply(input);
+        scaled.release();
+        return scaled;
+    }
+
+    /**
+     * Unscaled path: frame is pushed as is, costs one more full size copy on the library side.
+     */
+    @Benchmark
+    public byte[] unscaledCopy(FrameState frame) {
+        System.arraycopy(frame.packed, 0, unscaled, 0, unscaled.length);
+        return unscaled;
+    }
+}
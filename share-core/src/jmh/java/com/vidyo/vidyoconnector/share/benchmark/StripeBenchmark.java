@@ -0,0 +1,93 @@
+package com.vidyo.vidyoconnector.share.benchmark;
+
+import com.vidyo.vidyoconnector.share.model.FrameHolder;
+import com.vidyo.vidyoconnector.share.model.OutputFormat;
+import com.vidyo.vidyoconnector.share.transform.ColorMatrix;
+import com.vidyo.vidyoconnector.share.transform.DirtyRegionDetector;
+import com.vidyo.vidyoconnector.share.transform.FrameCopier;
+import com.vidyo.vidyoconnector.share.transform.FrameScaler;
+import com.vidyo.vidyoconnector.share.transform.StripeExecutor;
+import com.vidyo.vidyoconnector.share.transform.YuvConverter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-pixel kernels split into row bands, single threaded (parallelism 1) against all cores (parallelism 0).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StripeBenchmark {
+
+    @Param({"1", "0"})
+    public int parallelism;
+
+    private StripeExecutor stripeExecutor;
+    private YuvConverter yuvConverter;
+    private FrameScaler frameScaler;
+    private DirtyRegionDetector dirtyRegionDetector;
+
+    private FrameHolder frame;
+    private byte[] yuv;
+    private int dstWidth;
+    private int dstHeight;
+    private byte[] scaled;
+
+    @Setup
+    public void setUp(FrameState state) {
+        /* Calling thread only for parallelism 1, the way the pipeline runs without an executor */
+        stripeExecutor = parallelism == 1 ? null
+                : new StripeExecutor(parallelism > 0 ? parallelism : StripeExecutor.defaultParallelism());
+
+        yuvConverter = new YuvConverter(OutputFormat.I420, ColorMatrix.BT601, stripeExecutor);
+        frameScaler = new FrameScaler(stripeExecutor);
+        dirtyRegionDetector = new DirtyRegionDetector(DirtyRegionDetector.DEFAULT_TILE_SIZE, stripeExecutor);
+
+        frame = new FrameHolder(state.packed, state.width, state.height, 0);
+        yuv = new byte[OutputFormat.I420.frameSize(state.width, state.height)];
+
+        dstWidth = state.scaledWidth;
+        dstHeight = state.scaledHeight;
+        scaled = new byte[FrameCopier.packedSize(dstWidth, dstHeight)];
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (stripeExecutor != null) stripeExecutor.shutdown();
+    }
+
+    @Benchmark
+    public byte[] yuvConversion() {
+        yuvConverter.convert(frame.byteArray, frame.width, frame.height, yuv);
+        return yuv;
+    }
+
+    @Benchmark
+    public byte[] scale() {
+        frameScaler.scale(frame.byteArray, frame.width, frame.height, scaled, dstWidth, dstHeight,
+                FrameScaler.filterFor(frame.width, dstWidth));
+        return scaled;
+    }
+
+    @Benchmark
+    public int dirtyTiles() {
+        dirtyRegionDetector.detect(frame);
+        return dirtyRegionDetector.getDirtyTileCount();
+    }
+}
@@ -0,0 +1,73 @@
+package com.vidyo.vidyoconnector.share.benchmark;
+
+import com.vidyo.vidyoconnector.share.model.FrameHolder;
+import com.vidyo.vidyoconnector.share.model.FramePool;
+import com.vidyo.vidyoconnector.share.model.OutputFormat;
+import com.vidyo.vidyoconnector.share.provider.DuplicateFrameFilter;
+import com.vidyo.vidyoconnector.share.source.SyntheticFrameSource;
+import com.vidyo.vidyoconnector.share.transform.ColorMatrix;
+import com.vidyo.vidyoconnector.share.transform.ConstraintScaler;
+import com.vidyo.vidyoconnector.share.transform.YuvConverter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Whole per-frame path fed by synthetic content: render and stride copy, scale to constraints,
+ * duplicate check and I420 conversion of the frames that would be sent.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SyntheticPipelineBenchmark {
+
+    private static final int FPS = 30;
+
+    @Param({"STATIC", "SCROLLING_TEXT", "NOISE"})
+    public SyntheticFrameSource.Pattern pattern;
+
+    private final FramePool framePool = new FramePool();
+    private final ConstraintScaler constraintScaler = new ConstraintScaler(framePool, null);
+    private final DuplicateFrameFilter duplicateFrameFilter = new DuplicateFrameFilter();
+    private final YuvConverter yuvConverter = new YuvConverter(OutputFormat.I420, ColorMatrix.BT601);
+
+    private SyntheticFrameSource frameSource;
+    private long frameIndex;
+
+    @Setup
+    public void setUp(FrameState state) {
+        frameSource = new SyntheticFrameSource(framePool, pattern, state.width, state.height, state.rowPadding, FPS);
+        duplicateFrameFilter.setKeepAliveInterval(Long.MAX_VALUE);
+    }
+
+    @Benchmark
+    public boolean frame() {
+        final FrameHolder frame = constraintScaler.apply(frameSource.produceFrame(frameIndex++));
+
+        try {
+            if (!duplicateFrameFilter.accept(frame, frameIndex)) return false;
+
+            final FrameHolder yuv = framePool.lease(OutputFormat.I420.frameSize(frame.width, frame.height),
+                    frame.width, frame.height, frame.timestamp);
+            yuvConverter.convert(frame.byteArray, frame.width, frame.height, yuv.byteArray);
+            yuv.release();
+            return true;
+        } finally {
+            frame.release();
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.vidyo.vidyoconnector.share.capture;
+
+/**
+ * Lifecycle of a capture session, driven by {@link CaptureStateMachine}. Transitions happen on the capture thread,
+ * except for the requests to start and release which are accepted right away. A start requested while
+ * {@link #RELEASING} is deferred until {@link #RELEASED}.
+ * <pre>
+ * IDLE -> STARTING -> CAPTURING <-> RECONFIGURING
+ *             |           |              |
+ *             +-------> RELEASING <------+
+ *                         |
+ *                      RELEASED -> STARTING
+ * </pre>
+ */
+public enum CaptureState {
+
+    /**
+     * Created, never started.
+     */
+    IDLE,
+
+    /**
+     * Reader and virtual display are being set up.
+     */
+    STARTING,
+
+    /**
+     * Images are delivered.
+     */
+    CAPTURING,
+
+    /**
+     * Virtual display is being switched to another size, e.g. after rotation. Images keep flowing.
+     */
+    RECONFIGURING,
+
+    /**
+     * Release requested, capture resources are being released. A start requested meanwhile waits for it.
+     */
+    RELEASING,
+
+    /**
+     * Everything is released and session lanes are shut down. Session can be started again.
+     */
+    RELEASED
+}
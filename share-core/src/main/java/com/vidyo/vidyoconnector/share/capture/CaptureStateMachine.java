@@ -0,0 +1,112 @@
+package com.vidyo.vidyoconnector.share.capture;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Lifecycle rules of a capture session, see {@link CaptureState}.
+ * <p>
+ * Start and release are requested from any thread. A start requested while the previous run is still being
+ * released is not dropped: it is kept and runs as soon as the session reaches {@link CaptureState#RELEASED},
+ * unless a release is requested before that. The session does the actual work, the machine only decides.
+ */
+public class CaptureStateMachine {
+
+    public interface Listener {
+
+        void onTransition(CaptureState from, CaptureState to);
+    }
+
+    public enum StartResult {
+        /* Start has been run */
+        STARTED,
+        /* Start runs once the previous run is released */
+        DEFERRED,
+        /* Session is already started or has a start pending */
+        REJECTED
+    }
+
+    private final AtomicReference<CaptureState> state = new AtomicReference<>(CaptureState.IDLE);
+    private final Listener listener;
+
+    // Guarded by this
+    private Runnable deferredStart;
+    private Runnable deferredCancel;
+
+    public CaptureStateMachine(Listener listener) {
+        this.listener = listener;
+    }
+
+    public CaptureState getState() {
+        return state.get();
+    }
+
+    /**
+     * @param start  sets the session up, run in {@link CaptureState#STARTING} right away or once released.
+     * @param cancel run instead of a deferred start if a release is requested before it runs.
+     * @return how the request has been handled, nothing is run if it's rejected.
+     */
+    public synchronized StartResult requestStart(Runnable start, Runnable cancel) {
+        if (transition(CaptureState.IDLE, CaptureState.STARTING) || transition(CaptureState.RELEASED, CaptureState.STARTING)) {
+            start.run();
+            return StartResult.STARTED;
+        }
+
+        if (state.get() == CaptureState.RELEASING && deferredStart == null) {
+            deferredStart = start;
+            deferredCancel = cancel;
+            return StartResult.DEFERRED;
+        }
+
+        return StartResult.REJECTED;
+    }
+
+    /**
+     * Move a started session to {@link CaptureState#RELEASING}. Cancels a start deferred till the end of the release.
+     *
+     * @return true if release has been started by this call, the session has to finish it with {@link #onReleased()}.
+     */
+    public synchronized boolean requestRelease() {
+        if (deferredStart != null) {
+            final Runnable cancel = deferredCancel;
+            deferredStart = null;
+            deferredCancel = null;
+            cancel.run();
+            return false;
+        }
+
+        CaptureState current;
+        do {
+            current = state.get();
+            if (current == CaptureState.IDLE || current == CaptureState.RELEASING || current == CaptureState.RELEASED) {
+                return false;
+            }
+        } while (!state.compareAndSet(current, CaptureState.RELEASING));
+
+        listener.onTransition(current, CaptureState.RELEASING);
+        return true;
+    }
+
+    /**
+     * Release is done. A start deferred meanwhile is run right away.
+     */
+    public synchronized void onReleased() {
+        if (!transition(CaptureState.RELEASING, CaptureState.RELEASED)) return;
+
+        final Runnable start = deferredStart;
+        deferredStart = null;
+        deferredCancel = null;
+        if (start != null && transition(CaptureState.RELEASED, CaptureState.STARTING)) start.run();
+    }
+
+    /**
+     * Move between states of a running session, e.g. {@link CaptureState#STARTING} to {@link CaptureState#CAPTURING}.
+     *
+     * @return false if the session is not in the expected state, e.g. it's being released.
+     */
+    public boolean transition(CaptureState from, CaptureState to) {
+        if (!state.compareAndSet(from, to)) return false;
+
+        listener.onTransition(from, to);
+        return true;
+    }
+}
@@ -0,0 +1,17 @@
+package com.vidyo.vidyoconnector.share.metrics;
+
+/**
+ * Pipeline stage able to tell how many frames it has dropped.
+ */
+public interface FrameDropReporter {
+
+    /**
+     * @return short name of the stage used in logs.
+     */
+    String getStageName();
+
+    /**
+     * @return total number of frames dropped by the stage.
+     */
+    long getDroppedFrames();
+}
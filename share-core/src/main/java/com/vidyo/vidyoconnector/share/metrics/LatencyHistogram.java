@@ -0,0 +1,109 @@
+package com.vidyo.vidyoconnector.share.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free, allocation-free latency histogram with log-linear buckets, in the spirit of HdrHistogram.
+ * <p>
+ * Every power of two range is split into {@link #SUB_BUCKET_COUNT} linear buckets, so any recorded value
+ * is reported with at most 1/16 (~6%) relative error over the whole long range.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKET_COUNT = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * @param nanos latency in nanoseconds, negative values are recorded as 0.
+     */
+    public void record(long nanos) {
+        final long value = Math.max(0, nanos);
+
+        counts.incrementAndGet(bucketIndex(value));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+
+        long current;
+        do {
+            current = max.get();
+            if (value <= current) break;
+        } while (!max.compareAndSet(current, value));
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public long getMean() {
+        final long total = count.get();
+        return total == 0 ? 0 : sum.get() / total;
+    }
+
+    /**
+     * @param percentile in range [0..100].
+     * @return upper bound of the bucket holding the percentile, never above the recorded maximum, 0 if empty.
+     */
+    public long getPercentile(double percentile) {
+        final long total = count.get();
+        if (total == 0) return 0;
+
+        final long target = Math.max(1, (long) Math.ceil(Math.min(100, percentile) / 100 * total));
+
+        long cumulative = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            cumulative += counts.get(i);
+            if (cumulative >= target) return Math.min(bucketUpperBound(i), getMax());
+        }
+
+        return getMax();
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) counts.set(i, 0);
+
+        count.set(0);
+        sum.set(0);
+        max.set(0);
+    }
+
+    static int bucketIndex(long value) {
+        if (value < SUB_BUCKET_COUNT) return (int) value;
+
+        final int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        final int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKET_COUNT - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    static long bucketUpperBound(int index) {
+        if (index < SUB_BUCKET_COUNT) return index;
+
+        final int shift = index / SUB_BUCKET_COUNT - 1;
+        final long lower = (long) (SUB_BUCKET_COUNT + index % SUB_BUCKET_COUNT) << shift;
+        return lower + (1L << shift) - 1;
+    }
+
+    @Override
+    public String toString() {
+        return "p50=" + micros(getPercentile(50)) +
+                "us, p90=" + micros(getPercentile(90)) +
+                "us, p99=" + micros(getPercentile(99)) +
+                "us, max=" + micros(getMax()) +
+                "us, mean=" + micros(getMean()) + "us";
+    }
+
+    private static long micros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+}
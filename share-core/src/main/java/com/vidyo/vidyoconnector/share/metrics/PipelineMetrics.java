@@ -0,0 +1,89 @@
+package com.vidyo.vidyoconnector.share.metrics;
+
+/**
+ * Metrics of every share pipeline stage plus the end to end capture-to-push latency and frames lost on the way.
+ * <p>
+ * Recording never allocates or locks, so it's safe on the frame path. Latencies ending at a push are
+ * measured against the capture timestamp of the frame, which is in {@link System#nanoTime()} time base.
+ */
+public class PipelineMetrics {
+
+    public enum Stage {
+        /* Image queued in the reader until acquired. Images skipped by the reader show up as in - out */
+        ACQUIRE("acquire"),
+        /* Copy of the image into a frame */
+        CONVERT("convert"),
+        /* Downscale to share constraints */
+        PREPARE("prepare"),
+        /* Provider tick, latency is how late the tick fired after its deadline */
+        PROVIDE("provide"),
+        /* Hand over to the virtual source including pixel format conversion */
+        SEND("send");
+
+        final String label;
+
+        Stage(String label) {
+            this.label = label;
+        }
+    }
+
+    private final StageMetrics[] stages = new StageMetrics[Stage.values().length];
+    private final LatencyHistogram endToEnd = new LatencyHistogram();
+    private final LatencyHistogram orientationSwitch = new LatencyHistogram();
+    private final SequenceTracker sequence = new SequenceTracker();
+
+    public PipelineMetrics() {
+        for (Stage stage : Stage.values()) stages[stage.ordinal()] = new StageMetrics(stage.label);
+    }
+
+    public StageMetrics stage(Stage stage) {
+        return stages[stage.ordinal()];
+    }
+
+    /**
+     * @return latency from frame capture till it has been handed over to the virtual source.
+     */
+    public LatencyHistogram getEndToEnd() {
+        return endToEnd;
+    }
+
+    /**
+     * @return sequence numbers of frames handed over to the virtual source.
+     */
+    public SequenceTracker getSequence() {
+        return sequence;
+    }
+
+    /**
+     * @return time from orientation change till the first image captured in the new orientation.
+     */
+    public LatencyHistogram getOrientationSwitch() {
+        return orientationSwitch;
+    }
+
+    public void reset() {
+        for (StageMetrics stage : stages) stage.reset();
+        endToEnd.reset();
+        orientationSwitch.reset();
+        sequence.reset();
+    }
+
+    /**
+     * @return one line per stage followed by the end to end latency, sequence gaps and orientation switch time.
+     */
+    public String dump() {
+        final StringBuilder builder = new StringBuilder();
+        for (StageMetrics stage : stages) builder.append(stage).append('\n');
+
+        builder.append("capture-to-push: count=").append(endToEnd.getCount())
+                .append(", ").append(endToEnd).append('\n');
+        builder.append("sequence: ").append(sequence).append('\n');
+        return builder.append("orientation-switch: count=").append(orientationSwitch.getCount())
+                .append(", ").append(orientationSwitch).toString();
+    }
+
+    @Override
+    public String toString() {
+        return dump();
+    }
+}
@@ -0,0 +1,62 @@
+package com.vidyo.vidyoconnector.share.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Monotonic event counter able to report its rate per second between two samples.
+ */
+public class RateCounter {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final AtomicLong total = new AtomicLong();
+
+    private long sampleTotal;
+    private long sampleTime = -1;
+    private double lastRate;
+
+    public void increment() {
+        total.incrementAndGet();
+    }
+
+    public void add(long count) {
+        total.addAndGet(count);
+    }
+
+    public long getTotal() {
+        return total.get();
+    }
+
+    /**
+     * Compute rate of events since the previous sample.
+     *
+     * @param nowNanos monotonic time, e.g. {@link System#nanoTime()}.
+     * @return events per second, 0 for the very first sample.
+     */
+    public synchronized double sample(long nowNanos) {
+        final long current = total.get();
+
+        if (sampleTime >= 0 && nowNanos > sampleTime) {
+            lastRate = (double) (current - sampleTotal) * SECOND / (nowNanos - sampleTime);
+        }
+
+        sampleTotal = current;
+        sampleTime = nowNanos;
+        return lastRate;
+    }
+
+    /**
+     * @return true if at least one second passed since the previous sample.
+     */
+    public synchronized boolean isSampleDue(long nowNanos) {
+        return sampleTime < 0 || nowNanos - sampleTime >= SECOND;
+    }
+
+    public synchronized void reset() {
+        total.set(0);
+        sampleTotal = 0;
+        sampleTime = -1;
+        lastRate = 0;
+    }
+}
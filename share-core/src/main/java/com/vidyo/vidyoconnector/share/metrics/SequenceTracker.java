@@ -0,0 +1,103 @@
+package com.vidyo.vidyoconnector.share.metrics;
+
+import com.vidyo.vidyoconnector.share.model.FrameHolder;
+
+/**
+ * Follows frame sequence numbers at the end of the pipeline. Every sequence number missing between two
+ * delivered frames is a frame dropped somewhere upstream, whatever the stage.
+ * <p>
+ * Recorded from one thread at a time, counters can be read from any thread.
+ */
+public class SequenceTracker {
+
+    private volatile long lastSequence = FrameHolder.NO_SEQUENCE;
+
+    private volatile long delivered;
+    private volatile long lost;
+    private volatile long repeated;
+    private volatile long reordered;
+    private volatile long maxGap;
+
+    /**
+     * @return false if the frame has already been delivered, e.g. a keepalive repeat, or is older than the last one.
+     */
+    public boolean record(long sequence) {
+        if (sequence == FrameHolder.NO_SEQUENCE) return true;
+
+        final long last = lastSequence;
+        if (last != FrameHolder.NO_SEQUENCE) {
+            if (sequence == last) {
+                repeated++;
+                return false;
+            }
+
+            if (sequence < last) {
+                reordered++;
+                return false;
+            }
+
+            final long gap = sequence - last - 1;
+            if (gap > 0) {
+                lost += gap;
+                if (gap > maxGap) maxGap = gap;
+            }
+        }
+
+        lastSequence = sequence;
+        delivered++;
+        return true;
+    }
+
+    /**
+     * Forget the last sequence number, e.g. when a new source starts. Counters are kept.
+     */
+    public void restart() {
+        lastSequence = FrameHolder.NO_SEQUENCE;
+    }
+
+    public long getDelivered() {
+        return delivered;
+    }
+
+    /**
+     * @return frames missing between delivered ones.
+     */
+    public long getLost() {
+        return lost;
+    }
+
+    public long getRepeated() {
+        return repeated;
+    }
+
+    public long getReordered() {
+        return reordered;
+    }
+
+    public long getMaxGap() {
+        return maxGap;
+    }
+
+    /**
+     * @return share of frames lost of all frames that reached or should have reached the end.
+     */
+    public double getLossRatio() {
+        final long total = delivered + lost;
+        return total == 0 ? 0 : (double) lost / total;
+    }
+
+    public void reset() {
+        lastSequence = FrameHolder.NO_SEQUENCE;
+        delivered = 0;
+        lost = 0;
+        repeated = 0;
+        reordered = 0;
+        maxGap = 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("delivered=%d, lost=%d (%.1f%%), max gap=%d, repeated=%d, reordered=%d",
+                delivered, lost, getLossRatio() * 100, maxGap, repeated, reordered);
+    }
+}
@@ -0,0 +1,71 @@
+package com.vidyo.vidyoconnector.share.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Frames entering, leaving and dropped by one pipeline stage together with the time spent in it.
+ */
+public class StageMetrics {
+
+    private final String name;
+
+    private final AtomicLong in = new AtomicLong();
+    private final AtomicLong out = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    public StageMetrics(String name) {
+        this.name = name;
+    }
+
+    public void countIn() {
+        in.incrementAndGet();
+    }
+
+    public void countOut() {
+        out.incrementAndGet();
+    }
+
+    public void countDropped(long frames) {
+        dropped.addAndGet(frames);
+    }
+
+    public void recordLatency(long nanos) {
+        latency.record(nanos);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getIn() {
+        return in.get();
+    }
+
+    public long getOut() {
+        return out.get();
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    public void reset() {
+        in.set(0);
+        out.set(0);
+        dropped.set(0);
+        latency.reset();
+    }
+
+    @Override
+    public String toString() {
+        return name + ": in=" + in.get() +
+                ", out=" + out.get() +
+                ", dropped=" + dropped.get() +
+                ", " + latency;
+    }
+}
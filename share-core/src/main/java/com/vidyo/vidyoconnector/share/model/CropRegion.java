@@ -0,0 +1,61 @@
+package com.vidyo.vidyoconnector.share.model;
+
+/**
+ * Region of interest to share, in pixels of the captured frame.
+ */
+public class CropRegion {
+
+    public final int left;
+    public final int top;
+    public final int width;
+    public final int height;
+
+    public CropRegion(int left, int top, int width, int height) {
+        if (left < 0 || top < 0 || width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Wrong crop region: " + left + "," + top + " " + width + "x" + height);
+        }
+
+        this.left = left;
+        this.top = top;
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Fit the region into a frame, e.g. after rotation made the frame narrower than the region.
+     *
+     * @return region within the frame, this one if it already fits or null if they don't intersect.
+     */
+    public CropRegion clampTo(int frameWidth, int frameHeight) {
+        if (left + width <= frameWidth && top + height <= frameHeight) return this;
+        if (left >= frameWidth || top >= frameHeight) return null;
+
+        return new CropRegion(left, top, Math.min(width, frameWidth - left), Math.min(height, frameHeight - top));
+    }
+
+    /**
+     * @return region in a frame captured at the given fraction of the original size.
+     */
+    public CropRegion scale(float factor) {
+        if (factor == 1) return this;
+
+        final int scaledLeft = Math.round(left * factor);
+        final int scaledTop = Math.round(top * factor);
+        return new CropRegion(scaledLeft, scaledTop,
+                Math.max(1, Math.round((left + width) * factor) - scaledLeft), Math.max(1, Math.round((top + height) * factor) - scaledTop));
+    }
+
+    public boolean coversFrame(int frameWidth, int frameHeight) {
+        return left == 0 && top == 0 && width == frameWidth && height == frameHeight;
+    }
+
+    @Override
+    public String toString() {
+        return "CropRegion{" +
+                "left=" + left +
+                ", top=" + top +
+                ", width=" + width +
+                ", height=" + height +
+                '}';
+    }
+}
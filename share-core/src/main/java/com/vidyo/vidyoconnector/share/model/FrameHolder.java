@@ -0,0 +1,80 @@
+package com.vidyo.vidyoconnector.share.model;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hold/transfer frame information
+ * <p>
+ * Frames leased from {@link FramePool} are reference counted: every owner has to call {@link #release()}
+ * once it is done with the frame, so that the underlying buffer can be reused.
+ * <p>
+ * Capture timestamp and sequence number are assigned by the source and carried over to every frame derived
+ * from this one, so gaps in sequence numbers at the end of the pipeline are frames dropped on the way.
+ */
+public class FrameHolder {
+
+    public static final long NO_SEQUENCE = -1;
+
+    public final byte[] byteArray;
+    public final int width;
+    public final int height;
+    /* Capture time in System.nanoTime() time base */
+    public final long timestamp;
+    /* Monotonic per source, NO_SEQUENCE if unknown */
+    public final long sequence;
+
+    private final FramePool pool;
+    private final AtomicInteger references = new AtomicInteger(1);
+
+    public FrameHolder(byte[] byteArray, int width, int height, long timestamp) {
+        this(byteArray, width, height, timestamp, NO_SEQUENCE);
+    }
+
+    public FrameHolder(byte[] byteArray, int width, int height, long timestamp, long sequence) {
+        this(null, byteArray, width, height, timestamp, sequence);
+    }
+
+    FrameHolder(FramePool pool, byte[] byteArray, int width, int height, long timestamp, long sequence) {
+        this.pool = pool;
+        this.byteArray = byteArray;
+        this.width = width;
+        this.height = height;
+        this.timestamp = timestamp;
+        this.sequence = sequence;
+    }
+
+    /**
+     * Take one more reference to the frame.
+     *
+     * @return this frame.
+     */
+    public FrameHolder retain() {
+        if (!tryRetain()) throw new IllegalStateException("Frame has already been released.");
+        return this;
+    }
+
+    /**
+     * Take one more reference unless the frame has already been fully released.
+     *
+     * @return true if reference has been taken.
+     */
+    public boolean tryRetain() {
+        int current;
+        do {
+            current = references.get();
+            if (current <= 0) return false;
+        } while (!references.compareAndSet(current, current + 1));
+
+        return true;
+    }
+
+    /**
+     * Drop one reference. Buffer goes back to the pool once the last reference is released.
+     */
+    public void release() {
+        final int left = references.decrementAndGet();
+        if (left < 0) throw new IllegalStateException("Frame released more times than retained.");
+
+        if (left == 0 && pool != null) pool.recycle(this);
+    }
+}
@@ -0,0 +1,262 @@
+package com.vidyo.vidyoconnector.share.model;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Size-keyed, bounded pool of frame buffers.
+ * <p>
+ * Frames are leased with {@link #lease(int, int, int, long)} and come back automatically once
+ * the last {@link FrameHolder#release()} is called. Frames that become unreachable without being released
+ * are counted as leaks and their buffers are dropped.
+ * <p>
+ * Frames whose buffer is handed over to a consumer that returns it later, like the SDK, are {@link #lend(FrameHolder) lent}:
+ * the pool keeps a reference until the buffer comes back through {@link #recycle(byte[])}. Lending is off until the
+ * consumer is known to hand buffers back, see {@link #setLendingEnabled(boolean)}.
+ */
+public class FramePool {
+
+    private static final int DEFAULT_MAX_BUFFERS_PER_SIZE = 4;
+    private static final long DEFAULT_MAX_POOLED_BYTES = 64L * 1024 * 1024;
+    private static final int DEFAULT_MAX_LENT_FRAMES = 8;
+
+    private final int maxBuffersPerSize;
+    private final long maxPooledBytes;
+
+    private final Map<Integer, ArrayDeque<byte[]>> freeBuffers = new HashMap<>();
+    private final Map<byte[], LeaseReference> leasedBuffers = new IdentityHashMap<>();
+    /* Arrays don't override equals, so keys are compared by identity. Insertion order is lending order */
+    private final LinkedHashMap<byte[], FrameHolder> lentFrames = new LinkedHashMap<>();
+    private int maxLentFrames = DEFAULT_MAX_LENT_FRAMES;
+    private boolean lendingEnabled;
+    private final ReferenceQueue<FrameHolder> collectedFrames = new ReferenceQueue<>();
+
+    private long pooledBytes;
+
+    private long hits;
+    private long misses;
+    private long leaks;
+    private long abandonedLends;
+
+    public FramePool() {
+        this(DEFAULT_MAX_BUFFERS_PER_SIZE, DEFAULT_MAX_POOLED_BYTES);
+    }
+
+    public FramePool(int maxBuffersPerSize, long maxPooledBytes) {
+        this.maxBuffersPerSize = maxBuffersPerSize;
+        this.maxPooledBytes = maxPooledBytes;
+    }
+
+    /**
+     * Lease a frame with buffer of exact size. The frame is returned with one reference owned by the caller.
+     */
+    public FrameHolder lease(int size, int width, int height, long timestamp) {
+        return lease(size, width, height, timestamp, FrameHolder.NO_SEQUENCE);
+    }
+
+    /**
+     * Lease a frame for a transformed copy of the source frame, carrying over its timestamp and sequence number.
+     */
+    public FrameHolder leaseDerived(int size, int width, int height, FrameHolder source) {
+        return lease(size, width, height, source.timestamp, source.sequence);
+    }
+
+    /**
+     * @see #lease(int, int, int, long)
+     */
+    public synchronized FrameHolder lease(int size, int width, int height, long timestamp, long sequence) {
+        detectLeaks();
+
+        byte[] buffer = null;
+        final ArrayDeque<byte[]> buffers = freeBuffers.get(size);
+        if (buffers != null) buffer = buffers.poll();
+
+        if (buffer != null) {
+            pooledBytes -= size;
+            hits++;
+        } else {
+            buffer = new byte[size];
+            misses++;
+        }
+
+        final FrameHolder frame = new FrameHolder(this, buffer, width, height, timestamp, sequence);
+        leasedBuffers.put(buffer, new LeaseReference(frame, buffer, collectedFrames));
+        return frame;
+    }
+
+    /**
+     * Keep a reference to the frame while its buffer is used outside of the app, until it is handed back with
+     * {@link #recycle(byte[])}. If more frames are lent than allowed, the oldest one is assumed never to come back:
+     * it is forgotten unreleased, so its buffer is dropped instead of being reused while possibly still in use.
+     *
+     * @return false if lending is disabled, the frame is left untouched then.
+     */
+    public boolean lend(FrameHolder frame) {
+        final FrameHolder previous;
+        synchronized (this) {
+            if (!lendingEnabled) return false;
+
+            frame.retain();
+            previous = lentFrames.put(frame.byteArray, frame);
+            if (lentFrames.size() > maxLentFrames) {
+                final Iterator<FrameHolder> oldest = lentFrames.values().iterator();
+                abandon(oldest.next());
+                oldest.remove();
+            }
+        }
+
+        /* Same buffer lent again, only one reference is kept for it */
+        if (previous != null) previous.release();
+        return true;
+    }
+
+    /**
+     * Take back a buffer of a {@link #lend(FrameHolder) lent} frame and drop the reference kept for it.
+     * Buffers that are not lent by this pool are ignored. Any buffer handed back shows that the consumer keeps
+     * buffers past the call they were passed to, so lending gets enabled.
+     *
+     * @return true if buffer has been accepted.
+     */
+    public boolean recycle(byte[] buffer) {
+        if (buffer == null) return false;
+
+        final FrameHolder frame;
+        synchronized (this) {
+            lendingEnabled = true;
+            frame = lentFrames.remove(buffer);
+        }
+
+        if (frame == null) return false;
+
+        frame.release();
+        return true;
+    }
+
+    /**
+     * Lending is disabled by default: a consumer that copies the buffer and never hands it back would otherwise keep
+     * every lent buffer out of the pool. It is enabled by the first {@link #recycle(byte[])}.
+     */
+    public synchronized void setLendingEnabled(boolean lendingEnabled) {
+        this.lendingEnabled = lendingEnabled;
+    }
+
+    public synchronized boolean isLendingEnabled() {
+        return lendingEnabled;
+    }
+
+    /**
+     * @param maxLentFrames frames lent at once, above that the oldest one is abandoned.
+     */
+    public synchronized void setMaxLentFrames(int maxLentFrames) {
+        this.maxLentFrames = maxLentFrames;
+    }
+
+    public synchronized int getLentCount() {
+        return lentFrames.size();
+    }
+
+    /**
+     * @return lent frames never handed back. They are not counted as {@link #getLeaks() leaks}.
+     */
+    public synchronized long getAbandonedLends() {
+        return abandonedLends;
+    }
+
+    synchronized void recycle(FrameHolder frame) {
+        final LeaseReference lease = leasedBuffers.remove(frame.byteArray);
+        if (lease == null) return;
+
+        lease.clear();
+        offer(frame.byteArray);
+    }
+
+    /**
+     * Drop all pooled buffers. Leased frames are still tracked.
+     */
+    public synchronized void clear() {
+        freeBuffers.clear();
+        pooledBytes = 0;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getLeaks() {
+        detectLeaks();
+        return leaks;
+    }
+
+    public synchronized int getLeasedCount() {
+        return leasedBuffers.size();
+    }
+
+    /**
+     * Forget the lease of an abandoned frame, so its buffer is never reused and the frame isn't reported as a leak
+     * once it is collected.
+     */
+    private void abandon(FrameHolder frame) {
+        final LeaseReference lease = leasedBuffers.remove(frame.byteArray);
+        if (lease != null) lease.clear();
+        abandonedLends++;
+    }
+
+    private boolean offer(byte[] buffer) {
+        if (pooledBytes + buffer.length > maxPooledBytes) return false;
+
+        ArrayDeque<byte[]> buffers = freeBuffers.get(buffer.length);
+        if (buffers == null) {
+            buffers = new ArrayDeque<>(maxBuffersPerSize);
+            freeBuffers.put(buffer.length, buffers);
+        }
+
+        if (buffers.size() >= maxBuffersPerSize) return false;
+
+        buffers.offer(buffer);
+        pooledBytes += buffer.length;
+        return true;
+    }
+
+    private void detectLeaks() {
+        LeaseReference lease;
+        while ((lease = (LeaseReference) collectedFrames.poll()) != null) {
+            if (leasedBuffers.get(lease.buffer) == lease) {
+                leasedBuffers.remove(lease.buffer);
+                leaks++;
+            }
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "FramePool{" +
+                "hits=" + hits +
+                ", misses=" + misses +
+                ", leaks=" + leaks +
+                ", leased=" + leasedBuffers.size() +
+                ", lent=" + lentFrames.size() +
+                ", abandonedLends=" + abandonedLends +
+                ", pooledBytes=" + pooledBytes +
+                '}';
+    }
+
+    private static final class LeaseReference extends WeakReference<FrameHolder> {
+
+        private final byte[] buffer;
+
+        LeaseReference(FrameHolder frame, byte[] buffer, ReferenceQueue<FrameHolder> queue) {
+            super(frame, queue);
+            this.buffer = buffer;
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.vidyo.vidyoconnector.share.model;
+
+/**
+ * Pixel layout of frames handed to the library.
+ */
+public enum OutputFormat {
+    /* Packed 8 bit RGBA, 4 bytes per pixel */
+    RGBA,
+    /* Planar YUV 4:2:0: Y plane, U plane, V plane */
+    I420,
+    /* Semi-planar YUV 4:2:0: Y plane, interleaved UV plane */
+    NV12;
+
+    /**
+     * @return size in bytes of a frame with given dimensions. Odd dimensions round chroma planes up.
+     */
+    public int frameSize(int width, int height) {
+        if (this == RGBA) return width * height * 4;
+
+        return width * height + 2 * ((width + 1) / 2) * ((height + 1) / 2);
+    }
+}
@@ -1,7 +1,5 @@
 package com.vidyo.vidyoconnector.share.model;
 
-import androidx.annotation.NonNull;
-
 /**
  * Share constraints for remote delivery.
  */
@@ -46,7 +44,6 @@ public class ShareConstraints {
         return constraints == null || constraints.originalWidth != frameHolder.width || constraints.originalHeight != frameHolder.height;
     }
 
-    @NonNull
     @Override
     public String toString() {
         return "ShareConstraints{" +
@@ -0,0 +1,247 @@
+package com.vidyo.vidyoconnector.share.pipeline;
+
+import com.vidyo.vidyoconnector.share.transform.StripeExecutor;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Process-wide threads of the share pipeline.
+ * <p>
+ * Stages don't own threads. Each one gets a {@link Lane}, a serial queue that runs its tasks in order on a shared
+ * pool of named worker threads sized to the core count, with the priority of the stage. Per-pixel work is split
+ * by one shared {@link StripeExecutor} whose helpers run on the same pool, so the pipeline never has more threads
+ * than the pool size. Threads are created on demand and idle pool threads time out, so share restarts don't pile
+ * up threads.
+ * <p>
+ * Delayed work is posted by a single timer thread of the scheduler, see {@link #schedule(Lane, Runnable, long)}.
+ * The timer only hands tasks over to their lanes, they never run on it.
+ * <p>
+ * Tests can build a scheduler around their own executor, e.g. {@code Runnable::run} to run every task
+ * on the posting thread, and install it with {@link #setDefault(PipelineScheduler)}.
+ */
+public class PipelineScheduler {
+
+    /* Frame rate bound work: image transform and handing frames over to the library */
+    public static final int PRIORITY_DISPLAY = Thread.MAX_PRIORITY - 1;
+    /* Session control: start, reconfiguration, release */
+    public static final int PRIORITY_CONTROL = Thread.NORM_PRIORITY;
+
+    private static final String THREAD_NAME = "SharePipeline-";
+    private static final String TIMER_THREAD_NAME = "SharePipelineTimer-";
+    private static final long KEEP_ALIVE_SECONDS = 30;
+    /* Tasks a lane runs in a row before letting other lanes onto the thread */
+    private static final int LANE_BATCH = 16;
+
+    private static volatile PipelineScheduler defaultScheduler;
+
+    private final Executor executor;
+    /* Pool created for the default scheduler, null if the executor belongs to someone else */
+    private final ExecutorService ownPool;
+    private final StripeExecutor stripeExecutor;
+    private final ScheduledThreadPoolExecutor timer;
+
+    /**
+     * @return scheduler shared by all share sessions, created on first use.
+     */
+    public static PipelineScheduler getDefault() {
+        PipelineScheduler scheduler = defaultScheduler;
+        if (scheduler == null) {
+            synchronized (PipelineScheduler.class) {
+                scheduler = defaultScheduler;
+                if (scheduler == null) {
+                    scheduler = new PipelineScheduler(createPool(defaultPoolSize()), true, StripeExecutor.defaultParallelism());
+                    defaultScheduler = scheduler;
+                }
+            }
+        }
+
+        return scheduler;
+    }
+
+    /**
+     * Replace the shared scheduler, affects sessions created from now on. The replaced one keeps running
+     * the sessions created with it, shutting it down is up to the caller once they are released.
+     */
+    public static synchronized void setDefault(PipelineScheduler scheduler) {
+        defaultScheduler = scheduler;
+    }
+
+    /**
+     * @param executor          runs lane tasks and stripe helpers, has to accept tasks as long as lanes are used.
+     * @param stripeParallelism stripes of per-pixel work processed at once, 1 to run it on the calling thread.
+     */
+    public PipelineScheduler(Executor executor, int stripeParallelism) {
+        this(executor, false, stripeParallelism);
+    }
+
+    private PipelineScheduler(Executor executor, boolean ownsExecutor, int stripeParallelism) {
+        this.executor = executor;
+        this.ownPool = ownsExecutor ? (ExecutorService) executor : null;
+        this.stripeExecutor = new StripeExecutor(executor, stripeParallelism);
+
+        this.timer = new ScheduledThreadPoolExecutor(1, daemonThreads(TIMER_THREAD_NAME));
+        this.timer.setKeepAliveTime(KEEP_ALIVE_SECONDS, TimeUnit.SECONDS);
+        this.timer.allowCoreThreadTimeOut(true);
+        this.timer.setRemoveOnCancelPolicy(true);
+    }
+
+    public static int defaultPoolSize() {
+        return Math.max(2, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @return bounded pool of daemon threads named after the pipeline, idle threads are stopped.
+     */
+    public static ThreadPoolExecutor createPool(int threads) {
+        final ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), daemonThreads(THREAD_NAME));
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    private static ThreadFactory daemonThreads(String name) {
+        final AtomicInteger threadCount = new AtomicInteger();
+        return runnable -> {
+            final Thread thread = new Thread(runnable, name + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * @param name     stage name, for logs.
+     * @param priority {@link Thread} priority the tasks run with.
+     * @return new serial queue on the shared threads.
+     */
+    public Lane newLane(String name, int priority) {
+        return new Lane(name, priority);
+    }
+
+    public StripeExecutor getStripeExecutor() {
+        return stripeExecutor;
+    }
+
+    /**
+     * Post the task to the lane once the delay elapses. A task the lane rejects because it has been shut down
+     * meanwhile is dropped.
+     *
+     * @param delayNanos delay in nanoseconds, 0 or less to post right away.
+     * @return future to cancel the task before it's posted.
+     * @throws RejectedExecutionException once the scheduler is shut down.
+     */
+    public ScheduledFuture<?> schedule(Lane lane, Runnable task, long delayNanos) {
+        return timer.schedule(() -> {
+            try {
+                lane.execute(task);
+            } catch (RejectedExecutionException e) {
+                // Lane shut down while waiting
+            }
+        }, Math.max(0, delayNanos), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Stop the pool if the scheduler has created it, tasks already posted still run. Per-pixel work
+     * runs on the calling thread from now on, delayed tasks not posted yet are dropped.
+     */
+    public void shutdown() {
+        stripeExecutor.shutdown();
+        timer.shutdownNow();
+        if (ownPool != null) ownPool.shutdown();
+    }
+
+    /**
+     * Serial executor on the shared threads: tasks run one at a time in the order they were posted.
+     */
+    public final class Lane implements Executor {
+
+        private final String name;
+        private final int priority;
+
+        private final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private volatile boolean isShutdown;
+
+        private final Runnable drainTask = this::drain;
+
+        private Lane(String name, int priority) {
+            this.name = name;
+            this.priority = priority;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @throws RejectedExecutionException once the lane is shut down.
+         */
+        @Override
+        public void execute(Runnable task) {
+            if (isShutdown) throw new RejectedExecutionException(name + " is shut down");
+
+            tasks.add(task);
+            schedule();
+        }
+
+        /**
+         * Reject new tasks, already posted ones still run.
+         */
+        public void shutdown() {
+            isShutdown = true;
+        }
+
+        public boolean isShutdown() {
+            return isShutdown;
+        }
+
+        private void schedule() {
+            if (!scheduled.compareAndSet(false, true)) return;
+
+            try {
+                executor.execute(drainTask);
+            } catch (RejectedExecutionException e) {
+                scheduled.set(false);
+                throw e;
+            }
+        }
+
+        private void drain() {
+            final Thread thread = Thread.currentThread();
+            final int previousPriority = thread.getPriority();
+            if (previousPriority != priority) thread.setPriority(priority);
+
+            try {
+                Runnable task;
+                for (int i = 0; i < LANE_BATCH && (task = tasks.poll()) != null; i++) {
+                    try {
+                        task.run();
+                    } catch (RuntimeException e) {
+                        e.printStackTrace();
+                    }
+                }
+            } finally {
+                if (previousPriority != priority) thread.setPriority(previousPriority);
+
+                /* Task posted after the last poll has seen the lane scheduled, pick it up */
+                scheduled.set(false);
+                if (!tasks.isEmpty()) schedule();
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "Lane{" + "name='" + name + '\'' + ", priority=" + priority + ", queued=" + tasks.size() + '}';
+        }
+    }
+}
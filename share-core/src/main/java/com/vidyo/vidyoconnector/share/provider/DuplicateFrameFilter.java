@@ -0,0 +1,153 @@
+package com.vidyo.vidyoconnector.share.provider;
+
+import com.vidyo.vidyoconnector.share.metrics.FrameDropReporter;
+import com.vidyo.vidyoconnector.share.metrics.RateCounter;
+import com.vidyo.vidyoconnector.share.model.FrameHolder;
+import com.vidyo.vidyoconnector.share.transform.DirtyRegionDetector;
+import com.vidyo.vidyoconnector.share.transform.FrameHasher;
+import com.vidyo.vidyoconnector.share.transform.StripeExecutor;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Suppress pushes of frames whose content is identical to the last pushed one.
+ * Identical content is still pushed once per keepalive interval so the remote side gets refreshed.
+ */
+public class DuplicateFrameFilter implements FrameDropReporter {
+
+    public enum HashMode {
+        /* Every byte of the frame is hashed */
+        FULL,
+        /* Only every n-th row is hashed */
+        SAMPLED,
+        /* Every tile is hashed separately, provides dirty tiles and changed area */
+        TILES
+    }
+
+    private static final long DEFAULT_KEEPALIVE_INTERVAL = TimeUnit.SECONDS.toNanos(1);
+    private static final int DEFAULT_SAMPLED_ROW_STEP = 4;
+
+    private HashMode hashMode = HashMode.TILES;
+    private long keepAliveInterval = DEFAULT_KEEPALIVE_INTERVAL;
+    private boolean enabled = true;
+
+    private FrameHolder lastCheckedFrame;
+    private long lastHash;
+    private int lastSize = -1;
+    private long lastPushTime;
+
+    private final DirtyRegionDetector dirtyRegionDetector;
+
+    private final RateCounter pushedFrames = new RateCounter();
+    private final RateCounter suppressedFrames = new RateCounter();
+
+    public DuplicateFrameFilter() {
+        this(null);
+    }
+
+    /**
+     * @param stripeExecutor {@link StripeExecutor} for tile hashing, null to hash on the calling thread.
+     */
+    public DuplicateFrameFilter(StripeExecutor stripeExecutor) {
+        this.dirtyRegionDetector = new DirtyRegionDetector(DirtyRegionDetector.DEFAULT_TILE_SIZE, stripeExecutor);
+    }
+
+    public synchronized void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public synchronized void setHashMode(HashMode hashMode) {
+        this.hashMode = hashMode;
+        reset();
+    }
+
+    /**
+     * @param keepAliveInterval max time in nanoseconds identical content may be held back.
+     */
+    public synchronized void setKeepAliveInterval(long keepAliveInterval) {
+        this.keepAliveInterval = keepAliveInterval;
+    }
+
+    /**
+     * @param frame    frame about to be pushed.
+     * @param nowNanos monotonic time of the push.
+     * @return true if frame has to be pushed.
+     */
+    public synchronized boolean accept(FrameHolder frame, long nowNanos) {
+        final boolean duplicate = enabled && isDuplicate(frame);
+
+        if (duplicate && nowNanos - lastPushTime < keepAliveInterval) {
+            suppressedFrames.increment();
+            return false;
+        }
+
+        lastPushTime = nowNanos;
+        pushedFrames.increment();
+        return true;
+    }
+
+    /**
+     * @return part of frames suppressed from all checked frames, in range [0..1].
+     */
+    public double getSuppressionRatio() {
+        final long suppressed = suppressedFrames.getTotal();
+        final long total = suppressed + pushedFrames.getTotal();
+        return total == 0 ? 0 : (double) suppressed / total;
+    }
+
+    /**
+     * Dirty tiles of the last checked frame. Valid in {@link HashMode#TILES} mode only.
+     */
+    public DirtyRegionDetector getDirtyRegionDetector() {
+        return dirtyRegionDetector;
+    }
+
+    public RateCounter getPushedFrames() {
+        return pushedFrames;
+    }
+
+    public RateCounter getSuppressedFrames() {
+        return suppressedFrames;
+    }
+
+    @Override
+    public String getStageName() {
+        return "dedup";
+    }
+
+    @Override
+    public long getDroppedFrames() {
+        return suppressedFrames.getTotal();
+    }
+
+    public synchronized void reset() {
+        lastCheckedFrame = null;
+        lastSize = -1;
+        lastPushTime = 0;
+        dirtyRegionDetector.reset();
+    }
+
+    private boolean isDuplicate(FrameHolder frame) {
+        /* Same frame pushed again by provider, content can't differ */
+        if (frame == lastCheckedFrame) return true;
+
+        if (hashMode == HashMode.TILES) {
+            dirtyRegionDetector.detect(frame);
+
+            final boolean duplicate = lastCheckedFrame != null && dirtyRegionDetector.getDirtyTileCount() == 0;
+            lastCheckedFrame = frame;
+            return duplicate;
+        }
+
+        final long hash = hashMode == HashMode.SAMPLED
+                ? FrameHasher.hashSampled(frame.byteArray, frame.byteArray.length / frame.height, frame.height, DEFAULT_SAMPLED_ROW_STEP)
+                : FrameHasher.hash(frame.byteArray, 0, frame.byteArray.length, 0);
+
+        final boolean duplicate = lastCheckedFrame != null && hash == lastHash && frame.byteArray.length == lastSize;
+
+        lastCheckedFrame = frame;
+        lastHash = hash;
+        lastSize = frame.byteArray.length;
+        return duplicate;
+    }
+}
@@ -0,0 +1,41 @@
+package com.vidyo.vidyoconnector.share.provider;
+
+import com.vidyo.vidyoconnector.share.model.FrameHolder;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Lock-free exchange of the latest frame between one or more writers and any number of readers.
+ * <p>
+ * Writers publish atomically and release the replaced frame. Readers take their own reference, a frame
+ * released concurrently by a writer is never handed out because its reference count can't be raised from zero.
+ */
+public class FrameExchange {
+
+    private final AtomicReference<FrameHolder> latest = new AtomicReference<>();
+
+    /**
+     * Publish frame, its reference is taken over by the exchange.
+     */
+    public void publish(FrameHolder frame) {
+        final FrameHolder previous = latest.getAndSet(frame);
+        if (previous != null) previous.release();
+    }
+
+    /**
+     * @return latest frame with a reference owned by the caller, null if nothing has been published.
+     */
+    public FrameHolder acquire() {
+        while (true) {
+            final FrameHolder frame = latest.get();
+            if (frame == null) return null;
+
+            /* Fails only if the frame has just been replaced and released, the next read sees the new one */
+            if (frame.tryRetain()) return frame;
+        }
+    }
+
+    public void clear() {
+        publish(null);
+    }
+}
@@ -0,0 +1,121 @@
+package com.vidyo.vidyoconnector.share.provider;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Frame pacing based on absolute deadlines on a monotonic clock.
+ * <p>
+ * Deadlines are laid on a fixed grid: {@code start + n * interval}, so tick callback duration and
+ * wake-up latency never accumulate as drift. When ticks are missed the scheduler either fires the missed
+ * ones right away ({@link LatePolicy#CATCH_UP}, bounded) or jumps to the next grid point ({@link LatePolicy#SKIP}).
+ * Pure logic without threads, time is always passed in, so it can be driven by a virtual clock.
+ */
+public class FrameScheduler {
+
+    /**
+     * Monotonic time source in nanoseconds.
+     */
+    public interface Clock {
+
+        Clock SYSTEM = System::nanoTime;
+
+        long nanoTime();
+    }
+
+    public enum LatePolicy {
+        /* Fire missed ticks immediately, up to max catch up ticks */
+        CATCH_UP,
+        /* Drop missed ticks and continue with the next deadline in the future */
+        SKIP
+    }
+
+    private static final int DEFAULT_MAX_CATCH_UP_TICKS = 1;
+
+    private final LatePolicy latePolicy;
+    private final int maxCatchUpTicks;
+
+    private long interval;
+    private long nextDeadline;
+    private long skippedTicks;
+
+    public FrameScheduler(long intervalNanos, LatePolicy latePolicy) {
+        this(intervalNanos, latePolicy, DEFAULT_MAX_CATCH_UP_TICKS);
+    }
+
+    public FrameScheduler(long intervalNanos, LatePolicy latePolicy, int maxCatchUpTicks) {
+        if (intervalNanos <= 0) throw new IllegalArgumentException("Interval has to be positive: " + intervalNanos);
+
+        this.interval = intervalNanos;
+        this.latePolicy = latePolicy;
+        this.maxCatchUpTicks = maxCatchUpTicks;
+    }
+
+    /**
+     * Anchor the grid: first tick is due one interval after now.
+     */
+    public synchronized void start(long now) {
+        nextDeadline = now + interval;
+        skippedTicks = 0;
+    }
+
+    /**
+     * Change interval keeping the last fired deadline as anchor.
+     */
+    public synchronized void setInterval(long intervalNanos) {
+        if (intervalNanos <= 0) throw new IllegalArgumentException("Interval has to be positive: " + intervalNanos);
+
+        nextDeadline = nextDeadline - interval + intervalNanos;
+        interval = intervalNanos;
+    }
+
+    public synchronized long getInterval() {
+        return interval;
+    }
+
+    public synchronized long getNextDeadline() {
+        return nextDeadline;
+    }
+
+    /**
+     * @return time left until the next tick, zero or negative if it's already due.
+     */
+    public synchronized long timeToNextTick(long now) {
+        return nextDeadline - now;
+    }
+
+    /**
+     * Move to the next deadline after the due tick has been fired.
+     *
+     * @param now time the tick callback returned.
+     * @return next deadline.
+     */
+    public synchronized long advance(long now) {
+        long next = nextDeadline + interval;
+
+        if (now >= next) {
+            /* Next deadline is already missed as well */
+            final long missed = (now - next) / interval + 1;
+
+            /* Catch up fires the latest missed ticks that fit the budget and skips the older ones */
+            final long skipped = latePolicy == LatePolicy.SKIP ? missed : Math.max(0, missed - maxCatchUpTicks);
+            next += skipped * interval;
+            skippedTicks += skipped;
+        }
+
+        nextDeadline = next;
+        return next;
+    }
+
+    public synchronized long getSkippedTicks() {
+        return skippedTicks;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "FrameScheduler{" +
+                "interval=" + TimeUnit.NANOSECONDS.toMicros(interval) + "us" +
+                ", latePolicy=" + latePolicy +
+                ", skippedTicks=" + skippedTicks +
+                '}';
+    }
+}
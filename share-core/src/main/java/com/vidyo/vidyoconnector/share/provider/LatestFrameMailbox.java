@@ -0,0 +1,66 @@
+package com.vidyo.vidyoconnector.share.provider;
+
+import com.vidyo.vidyoconnector.share.metrics.FrameDropReporter;
+import com.vidyo.vidyoconnector.share.metrics.RateCounter;
+import com.vidyo.vidyoconnector.share.model.FrameHolder;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Single slot, lock-free, latest wins handoff of frames to one consumer thread.
+ * <p>
+ * A frame posted while the previous one is still waiting replaces it and the replaced frame is released
+ * right away, so the consumer always gets the newest frame and stale ones never pile up.
+ */
+public class LatestFrameMailbox implements FrameDropReporter {
+
+    private final AtomicReference<FrameHolder> slot = new AtomicReference<>();
+    private final RateCounter overwrites = new RateCounter();
+
+    /**
+     * Post frame, its reference is taken over by the mailbox.
+     *
+     * @return true if a frame still waiting for the consumer has been replaced.
+     */
+    public boolean post(FrameHolder frame) {
+        final FrameHolder overwritten = slot.getAndSet(frame);
+        if (overwritten != null) {
+            overwritten.release();
+            overwrites.increment();
+        }
+
+        return overwritten != null;
+    }
+
+    /**
+     * @return waiting frame owned by the caller or null if the slot is empty.
+     */
+    public FrameHolder poll() {
+        return slot.getAndSet(null);
+    }
+
+    /**
+     * Release waiting frame, if any.
+     */
+    public void clear() {
+        final FrameHolder frame = poll();
+        if (frame != null) frame.release();
+    }
+
+    /**
+     * @return counter of frames replaced before the consumer took them.
+     */
+    public RateCounter getOverwrites() {
+        return overwrites;
+    }
+
+    @Override
+    public String getStageName() {
+        return "sender";
+    }
+
+    @Override
+    public long getDroppedFrames() {
+        return overwrites.getTotal();
+    }
+}
@@ -0,0 +1,50 @@
+package com.vidyo.vidyoconnector.share.record;
+
+/**
+ * Layout of frame recording files, all values little endian.
+ * <pre>
+ * File header, 16 bytes:
+ *   int  magic        'VSFR'
+ *   int  version
+ *   int  tileSize     tile size used by {@link #ENCODING_TILES} frames
+ *   int  frameCount   written on close, 0 if recording hasn't been closed properly
+ *
+ * Frame record, 24 bytes header followed by payload:
+ *   int  width
+ *   int  height
+ *   long timestamp    capture timestamp, nanoseconds
+ *   int  encoding     {@link #ENCODING_RAW} or {@link #ENCODING_TILES}
+ *   int  payloadSize
+ *
+ * RAW payload: packed RGBA frame, width * height * 4 bytes.
+ * TILES payload: dirty tiles bitmap as longs, bit (row * tileColumns + column) set for a tile changed since
+ * the previous frame, followed by pixels of the dirty tiles in bitmap order, each one row by row.
+ * Tiles frame always has the size of the previous frame.
+ *
+ * Files are at most {@link #MAX_FILE_SIZE} bytes, so they can be mapped at once.
+ * </pre>
+ */
+public final class FrameRecordFormat {
+
+    public static final int MAGIC = 0x52465356;
+    public static final int VERSION = 1;
+
+    public static final int HEADER_SIZE = 16;
+    public static final int FRAME_COUNT_OFFSET = 12;
+    public static final int FRAME_HEADER_SIZE = 24;
+    public static final long MAX_FILE_SIZE = Integer.MAX_VALUE;
+
+    public static final int ENCODING_RAW = 0;
+    public static final int ENCODING_TILES = 1;
+
+    private FrameRecordFormat() {
+    }
+
+    static int tileCount(int size, int tileSize) {
+        return (size + tileSize - 1) / tileSize;
+    }
+
+    static int bitmapBytes(int tiles) {
+        return ((tiles + 63) >>> 6) * Long.BYTES;
+    }
+}
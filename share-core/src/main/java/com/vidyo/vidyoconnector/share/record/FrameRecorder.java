@@ -0,0 +1,196 @@
+package com.vidyo.vidyoconnector.share.record;
+
+import com.vidyo.vidyoconnector.share.model.FrameHolder;
+import com.vidyo.vidyoconnector.share.transform.DirtyRegionDetector;
+import com.vidyo.vidyoconnector.share.transform.FrameCopier;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Write frames with their timestamps into a {@link FrameRecordFormat} file through a memory mapped window.
+ * <p>
+ * With tile compression a frame of the same size as the previous one only stores tiles changed since then,
+ * unless most of the frame changed or a keyframe is due.
+ */
+public class FrameRecorder implements Closeable {
+
+    /* Mapped window grows the file in steps of this size */
+    private static final int MAPPING_CHUNK = 64 * 1024 * 1024;
+    /* Raw frame forced after this many tile frames, bounds the work to decode a frame out of order */
+    private static final int KEYFRAME_INTERVAL = 150;
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    /* Null without tile compression */
+    private final DirtyRegionDetector dirtyRegionDetector;
+    private final int tileSize;
+
+    private MappedByteBuffer mapping;
+    private long mappingStart;
+    private long closedSize;
+
+    private int lastWidth = -1;
+    private int lastHeight = -1;
+    private int framesSinceKeyframe;
+    private int frameCount;
+    private long rawBytes;
+    private boolean closed;
+
+    public FrameRecorder(File file, boolean tileCompression) throws IOException {
+        this(file, tileCompression, DirtyRegionDetector.DEFAULT_TILE_SIZE);
+    }
+
+    public FrameRecorder(File file, boolean tileCompression, int tileSize) throws IOException {
+        this.file = new RandomAccessFile(file, "rw");
+        this.channel = this.file.getChannel();
+        this.tileSize = tileSize;
+        this.dirtyRegionDetector = tileCompression ? new DirtyRegionDetector(tileSize, null) : null;
+
+        channel.truncate(0);
+        ensureCapacity(FrameRecordFormat.HEADER_SIZE);
+        mapping.putInt(FrameRecordFormat.MAGIC);
+        mapping.putInt(FrameRecordFormat.VERSION);
+        mapping.putInt(tileSize);
+        mapping.putInt(0);
+    }
+
+    /**
+     * Append frame. Frame reference stays with the caller.
+     *
+     * @return false if the frame doesn't fit into {@link FrameRecordFormat#MAX_FILE_SIZE}, recording is full then.
+     */
+    public synchronized boolean record(FrameHolder frame) throws IOException {
+        if (closed) throw new IllegalStateException("Recorder has already been closed.");
+
+        final int rawSize = FrameCopier.packedSize(frame.width, frame.height);
+        /* Worst case of a tile frame: every tile plus the bitmap */
+        final long maxRecordSize = FrameRecordFormat.FRAME_HEADER_SIZE + (long) rawSize
+                + (dirtyRegionDetector != null ? FrameRecordFormat.bitmapBytes(FrameRecordFormat.tileCount(frame.width, tileSize)
+                * FrameRecordFormat.tileCount(frame.height, tileSize)) : 0);
+        if (getWrittenBytes() + maxRecordSize > FrameRecordFormat.MAX_FILE_SIZE) return false;
+
+        final boolean sameSize = frame.width == lastWidth && frame.height == lastHeight;
+
+        boolean tiles = false;
+        if (dirtyRegionDetector != null) {
+            dirtyRegionDetector.detect(frame);
+
+            final int tileCount = dirtyRegionDetector.getTileColumns() * dirtyRegionDetector.getTileRows();
+            tiles = sameSize && framesSinceKeyframe < KEYFRAME_INTERVAL
+                    && dirtyRegionDetector.getDirtyTileCount() * 4 < tileCount * 3;
+        }
+
+        ensureCapacity(FrameRecordFormat.FRAME_HEADER_SIZE + rawSize + (tiles ? FrameRecordFormat.bitmapBytes(
+                dirtyRegionDetector.getTileColumns() * dirtyRegionDetector.getTileRows()) : 0));
+
+        final int headerPosition = mapping.position();
+        mapping.putInt(frame.width);
+        mapping.putInt(frame.height);
+        mapping.putLong(frame.timestamp);
+        mapping.putInt(tiles ? FrameRecordFormat.ENCODING_TILES : FrameRecordFormat.ENCODING_RAW);
+        mapping.putInt(0);
+
+        final int payloadPosition = mapping.position();
+        if (tiles) {
+            writeTiles(frame);
+            framesSinceKeyframe++;
+        } else {
+            mapping.put(frame.byteArray, 0, rawSize);
+            framesSinceKeyframe = 0;
+        }
+
+        mapping.putInt(headerPosition + FrameRecordFormat.FRAME_HEADER_SIZE - Integer.BYTES, mapping.position() - payloadPosition);
+
+        lastWidth = frame.width;
+        lastHeight = frame.height;
+        rawBytes += rawSize;
+        frameCount++;
+        return true;
+    }
+
+    public synchronized int getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * @return bytes written so far, header included.
+     */
+    public synchronized long getWrittenBytes() {
+        if (closed) return closedSize;
+        return mappingStart + (mapping != null ? mapping.position() : 0);
+    }
+
+    /**
+     * @return written bytes relative to the same frames stored raw, 1 without any gain.
+     */
+    public synchronized double getCompressionRatio() {
+        return rawBytes == 0 ? 1 : (double) getWrittenBytes() / rawBytes;
+    }
+
+    /**
+     * Finalize header and cut the file to the written size.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) return;
+
+        final long size = getWrittenBytes();
+        closedSize = size;
+        closed = true;
+
+        mapping.force();
+        mapping = null;
+
+        try {
+            final ByteBuffer count = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            count.putInt(0, frameCount);
+            channel.write(count, FrameRecordFormat.FRAME_COUNT_OFFSET);
+            channel.truncate(size);
+        } finally {
+            file.close();
+        }
+    }
+
+    private void writeTiles(FrameHolder frame) {
+        final long[] bitmap = dirtyRegionDetector.getDirtyBitmap();
+        for (long word : bitmap) mapping.putLong(word);
+
+        final int columns = dirtyRegionDetector.getTileColumns();
+        final int tiles = columns * dirtyRegionDetector.getTileRows();
+        final int rowBytes = frame.width * FrameCopier.RGBA_PIXEL_STRIDE;
+
+        for (int tile = 0; tile < tiles; tile++) {
+            if ((bitmap[tile >>> 6] & 1L << tile) == 0) continue;
+
+            final int x = tile % columns * tileSize;
+            final int y = tile / columns * tileSize;
+            final int tileRowBytes = Math.min(tileSize, frame.width - x) * FrameCopier.RGBA_PIXEL_STRIDE;
+            final int toRow = Math.min(y + tileSize, frame.height);
+
+            for (int row = y; row < toRow; row++) {
+                mapping.put(frame.byteArray, row * rowBytes + x * FrameCopier.RGBA_PIXEL_STRIDE, tileRowBytes);
+            }
+        }
+    }
+
+    /**
+     * Make sure the mapped window has room for the given number of bytes, remapping it further in the file if not.
+     */
+    private void ensureCapacity(int bytes) throws IOException {
+        if (mapping != null && mapping.remaining() >= bytes) return;
+
+        final long position = getWrittenBytes();
+        /* Window doesn't grow the file past the size limit */
+        final long size = Math.max(bytes, Math.min(MAPPING_CHUNK, FrameRecordFormat.MAX_FILE_SIZE - position));
+        mapping = channel.map(FileChannel.MapMode.READ_WRITE, position, size);
+        mapping.order(ByteOrder.LITTLE_ENDIAN);
+        mappingStart = position;
+    }
+}
@@ -0,0 +1,242 @@
+package com.vidyo.vidyoconnector.share.record;
+
+import com.vidyo.vidyoconnector.share.model.FrameHolder;
+import com.vidyo.vidyoconnector.share.model.FramePool;
+import com.vidyo.vidyoconnector.share.transform.FrameCopier;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Read access to a {@link FrameRecordFormat} file mapped into memory.
+ * <p>
+ * Frames are decoded straight from the mapping into the output frame, the only copy a frame takes, as frames
+ * of the pipeline are backed by heap arrays. Tile frames are applied on top of
+ * a private canvas holding the previous frame, which is rebuilt from the last raw frame when frames are
+ * decoded out of order.
+ */
+public class FrameRecording implements Closeable {
+
+    private final RandomAccessFile file;
+    private final MappedByteBuffer mapping;
+    private final int tileSize;
+
+    private final int frameCount;
+    private final int[] offsets;
+    /* Index of the raw frame every frame is based on */
+    private final int[] keyframes;
+
+    /* Previous frame for tile decoding, represents frame canvasIndex */
+    private byte[] canvas = new byte[0];
+    private int canvasIndex = -1;
+
+    private FrameRecording(RandomAccessFile file) throws IOException {
+        this.file = file;
+
+        final FileChannel channel = file.getChannel();
+        if (channel.size() > Integer.MAX_VALUE) throw new IOException("Recording larger than 2 GiB is not supported.");
+
+        mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        mapping.order(ByteOrder.LITTLE_ENDIAN);
+
+        if (mapping.limit() < FrameRecordFormat.HEADER_SIZE || mapping.getInt(0) != FrameRecordFormat.MAGIC)
+            throw new IOException("Not a frame recording.");
+        if (mapping.getInt(4) != FrameRecordFormat.VERSION)
+            throw new IOException("Unsupported recording version: " + mapping.getInt(4));
+
+        tileSize = mapping.getInt(8);
+        if (tileSize <= 0) throw new IOException("Invalid tile size: " + tileSize);
+
+        /* Frame count is written on close only. Without it the file may have been cut off, or end with zeros
+         * of a mapped window that was never written, so records are scanned until the first invalid one */
+        final int headerFrameCount = mapping.getInt(FrameRecordFormat.FRAME_COUNT_OFFSET);
+        int[] found = new int[64];
+        int count = 0;
+        int position = FrameRecordFormat.HEADER_SIZE;
+        int previous = -1;
+
+        while ((headerFrameCount <= 0 || count < headerFrameCount) && isValidRecord(position, previous)) {
+            if (count == found.length) found = Arrays.copyOf(found, count * 2);
+            found[count++] = position;
+            previous = position;
+            position += FrameRecordFormat.FRAME_HEADER_SIZE + mapping.getInt(position + FrameRecordFormat.FRAME_HEADER_SIZE - Integer.BYTES);
+        }
+
+        frameCount = count;
+        offsets = Arrays.copyOf(found, count);
+        keyframes = new int[count];
+
+        int keyframe = -1;
+        for (int i = 0; i < count; i++) {
+            if (getEncoding(i) == FrameRecordFormat.ENCODING_RAW) keyframe = i;
+            if (keyframe < 0) throw new IOException("Recording doesn't start with a raw frame.");
+            keyframes[i] = keyframe;
+        }
+    }
+
+    public static FrameRecording open(File file) throws IOException {
+        final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            return new FrameRecording(randomAccessFile);
+        } catch (IOException | RuntimeException e) {
+            randomAccessFile.close();
+            throw e;
+        }
+    }
+
+    public int getFrameCount() {
+        return frameCount;
+    }
+
+    public int getWidth(int index) {
+        return mapping.getInt(offsets[index]);
+    }
+
+    public int getHeight(int index) {
+        return mapping.getInt(offsets[index] + 4);
+    }
+
+    /**
+     * @return capture timestamp of the frame as recorded, nanoseconds.
+     */
+    public long getTimestamp(int index) {
+        return mapping.getLong(offsets[index] + 8);
+    }
+
+    public int getEncoding(int index) {
+        return mapping.getInt(offsets[index] + 16);
+    }
+
+    /**
+     * @return time between the first and the last frame, nanoseconds.
+     */
+    public long getDuration() {
+        return frameCount == 0 ? 0 : getTimestamp(frameCount - 1) - getTimestamp(0);
+    }
+
+    /**
+     * Decode frame into a frame leased from the pool, index is its sequence number.
+     *
+     * @param timestamp timestamp of the returned frame.
+     * @return frame owned by the caller.
+     */
+    public FrameHolder decode(int index, FramePool framePool, long timestamp) {
+        return decode(index, framePool, timestamp, index);
+    }
+
+    /**
+     * @see #decode(int, FramePool, long)
+     */
+    public synchronized FrameHolder decode(int index, FramePool framePool, long timestamp, long sequence) {
+        final int width = getWidth(index);
+        final int height = getHeight(index);
+        final FrameHolder frame = framePool.lease(FrameCopier.packedSize(width, height), width, height, timestamp, sequence);
+
+        if (getEncoding(index) == FrameRecordFormat.ENCODING_RAW) {
+            /* Directly from the mapping, canvas is rebuilt from here only if a tile frame follows */
+            readPayload(index, frame.byteArray, 0, frame.byteArray.length);
+            return frame;
+        }
+
+        final int keyframe = keyframes[index];
+        int from = canvasIndex + 1;
+        if (canvasIndex < keyframe || canvasIndex >= index) {
+            final int size = FrameCopier.packedSize(getWidth(keyframe), getHeight(keyframe));
+            if (canvas.length != size) canvas = new byte[size];
+
+            readPayload(keyframe, canvas, 0, size);
+            from = keyframe + 1;
+        }
+
+        for (int i = from; i <= index; i++) applyTiles(i);
+        canvasIndex = index;
+
+        System.arraycopy(canvas, 0, frame.byteArray, 0, canvas.length);
+        return frame;
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+
+    private void applyTiles(int index) {
+        final int width = getWidth(index);
+        final int height = getHeight(index);
+        final int columns = FrameRecordFormat.tileCount(width, tileSize);
+        final int tiles = columns * FrameRecordFormat.tileCount(height, tileSize);
+        final int rowBytes = width * FrameCopier.RGBA_PIXEL_STRIDE;
+
+        final int bitmapPosition = offsets[index] + FrameRecordFormat.FRAME_HEADER_SIZE;
+        final ByteBuffer pixels = mapping.duplicate();
+        pixels.position(bitmapPosition + FrameRecordFormat.bitmapBytes(tiles));
+
+        for (int tile = 0; tile < tiles; tile++) {
+            final long word = mapping.getLong(bitmapPosition + (tile >>> 6) * Long.BYTES);
+            if ((word & 1L << tile) == 0) continue;
+
+            final int x = tile % columns * tileSize;
+            final int y = tile / columns * tileSize;
+            final int tileRowBytes = Math.min(tileSize, width - x) * FrameCopier.RGBA_PIXEL_STRIDE;
+            final int toRow = Math.min(y + tileSize, height);
+
+            for (int row = y; row < toRow; row++) {
+                pixels.get(canvas, row * rowBytes + x * FrameCopier.RGBA_PIXEL_STRIDE, tileRowBytes);
+            }
+        }
+    }
+
+    /**
+     * @param previous position of the previous record, -1 for the first one.
+     * @return true if a complete record with a payload matching its header starts at the position.
+     */
+    private boolean isValidRecord(int position, int previous) {
+        if ((long) position + FrameRecordFormat.FRAME_HEADER_SIZE > mapping.limit()) return false;
+
+        final int width = mapping.getInt(position);
+        final int height = mapping.getInt(position + 4);
+        final int encoding = mapping.getInt(position + 16);
+        final int payloadSize = mapping.getInt(position + 20);
+        if (width <= 0 || height <= 0 || payloadSize < 0) return false;
+
+        final long payloadPosition = (long) position + FrameRecordFormat.FRAME_HEADER_SIZE;
+        if (payloadPosition + payloadSize > mapping.limit()) return false;
+
+        final long rawSize = (long) width * height * FrameCopier.RGBA_PIXEL_STRIDE;
+        if (encoding == FrameRecordFormat.ENCODING_RAW) return payloadSize == rawSize;
+        if (encoding != FrameRecordFormat.ENCODING_TILES) return false;
+
+        /* Tiles apply to a previous frame of the same size */
+        if (previous < 0 || mapping.getInt(previous) != width || mapping.getInt(previous + 4) != height) return false;
+
+        final int columns = FrameRecordFormat.tileCount(width, tileSize);
+        final int tiles = columns * FrameRecordFormat.tileCount(height, tileSize);
+        final int bitmapBytes = FrameRecordFormat.bitmapBytes(tiles);
+        if (payloadSize < bitmapBytes) return false;
+
+        long expected = bitmapBytes;
+        for (int tile = 0; tile < tiles; tile++) {
+            final long word = mapping.getLong((int) payloadPosition + (tile >>> 6) * Long.BYTES);
+            if ((word & 1L << tile) == 0) continue;
+
+            final int x = tile % columns * tileSize;
+            final int y = tile / columns * tileSize;
+            expected += (long) Math.min(tileSize, width - x) * Math.min(tileSize, height - y) * FrameCopier.RGBA_PIXEL_STRIDE;
+        }
+
+        return payloadSize == expected;
+    }
+
+    private void readPayload(int index, byte[] destination, int offset, int length) {
+        final ByteBuffer payload = mapping.duplicate();
+        payload.position(offsets[index] + FrameRecordFormat.FRAME_HEADER_SIZE);
+        payload.get(destination, offset, length);
+    }
+}
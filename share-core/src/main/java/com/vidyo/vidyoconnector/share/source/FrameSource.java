@@ -0,0 +1,42 @@
+package com.vidyo.vidyoconnector.share.source;
+
+import com.vidyo.vidyoconnector.share.metrics.FrameDropReporter;
+import com.vidyo.vidyoconnector.share.model.FrameHolder;
+
+/**
+ * Producer of frames feeding the share pipeline: screen capture on device, synthetic or recorded frames elsewhere.
+ * <p>
+ * Frames are either delivered to {@link FrameSourceListener} as soon as they're produced or, in lazy mode,
+ * only the newest one is kept and converted when pulled with {@link #convertPendingFrame()}.
+ */
+public interface FrameSource extends FrameDropReporter {
+
+    void listen(FrameSourceListener listener);
+
+    /**
+     * Start producing frames.
+     *
+     * @return false if the source is already running or cannot be started.
+     */
+    boolean start();
+
+    /**
+     * Enable convert-on-demand mode. Frames are no longer delivered via
+     * {@link FrameSourceListener#onFrameCaptured(FrameHolder)}, the newest one has to be pulled instead.
+     */
+    void setLazyConversion(boolean lazyConversion);
+
+    boolean isLazyConversion();
+
+    /**
+     * Convert the newest frame produced since the previous call.
+     *
+     * @return converted frame owned by the caller or null if no new frame is available.
+     */
+    FrameHolder convertPendingFrame();
+
+    /**
+     * Stop producing frames and release resources, {@link FrameSourceListener#onSourceStopped()} follows.
+     */
+    void requestRelease();
+}
@@ -0,0 +1,18 @@
+package com.vidyo.vidyoconnector.share.source;
+
+import com.vidyo.vidyoconnector.share.metrics.PipelineMetrics;
+import com.vidyo.vidyoconnector.share.model.FramePool;
+import com.vidyo.vidyoconnector.share.pipeline.PipelineScheduler;
+
+/**
+ * Creates the {@link FrameSource} a share pipeline is fed from, on the pool and threads of that pipeline.
+ */
+public interface FrameSourceFactory {
+
+    /**
+     * @param framePool         {@link FramePool} frames have to be leased from, the pipeline recycles them there.
+     * @param pipelineScheduler {@link PipelineScheduler} the source may run its tasks on.
+     * @param pipelineMetrics   {@link PipelineMetrics} the source may report its stages to.
+     */
+    FrameSource create(FramePool framePool, PipelineScheduler pipelineScheduler, PipelineMetrics pipelineMetrics);
+}
@@ -0,0 +1,16 @@
+package com.vidyo.vidyoconnector.share.source;
+
+import com.vidyo.vidyoconnector.share.model.FrameHolder;
+
+public interface FrameSourceListener {
+
+    /**
+     * Newly captured frame, called on a worker thread of the source.
+     * Listener takes over the frame reference and has to release it.
+     *
+     * @param frameHolder {@link FrameHolder} captured frame.
+     */
+    void onFrameCaptured(FrameHolder frameHolder);
+
+    void onSourceStopped();
+}
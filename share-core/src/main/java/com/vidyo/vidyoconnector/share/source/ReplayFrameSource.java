@@ -0,0 +1,190 @@
+package com.vidyo.vidyoconnector.share.source;
+
+import com.vidyo.vidyoconnector.share.metrics.RateCounter;
+import com.vidyo.vidyoconnector.share.model.FrameHolder;
+import com.vidyo.vidyoconnector.share.model.FramePool;
+import com.vidyo.vidyoconnector.share.provider.FrameScheduler;
+import com.vidyo.vidyoconnector.share.record.FrameRecording;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * {@link FrameSource} streaming a {@link FrameRecording} back, with recorded or accelerated timing.
+ * <p>
+ * Replayed frames are stamped with the replay time, so pipeline latencies stay meaningful.
+ * <p>
+ * Reads from the mapped recording are zero-copy up to the frame: every replayed frame is decoded with one copy
+ * from the mapping into a pooled {@code byte[]}. The pipeline after the source (scaling, conversion, dedup and the
+ * library's send) works on heap arrays, so handing out mapped buffers would only move that copy downstream.
+ */
+public class ReplayFrameSource implements FrameSource {
+
+    /* Replay frames back to back, without waiting for their timestamps */
+    public static final double AS_FAST_AS_POSSIBLE = 0;
+
+    private static final String THREAD_NAME = "ShareReplaySource";
+    private static final long NO_PENDING_FRAME = -1;
+
+    private final FramePool framePool;
+    private final FrameRecording recording;
+    private final double speed;
+    private final boolean loop;
+    private final FrameScheduler.Clock clock;
+
+    private volatile FrameSourceListener listener;
+    private volatile boolean lazyConversion;
+    private volatile Thread replayThread;
+
+    /* Sequence number of the frame waiting to be pulled, frame index is derived from it */
+    private final AtomicLong pendingSequence = new AtomicLong(NO_PENDING_FRAME);
+
+    private final RateCounter replayedFrames = new RateCounter();
+    private final RateCounter skippedFrames = new RateCounter();
+
+    /**
+     * @param speed 1 for recorded timing, 2 for twice as fast etc. or {@link #AS_FAST_AS_POSSIBLE}.
+     * @param loop  start over once the last frame has been replayed, stop otherwise.
+     */
+    public ReplayFrameSource(FramePool framePool, FrameRecording recording, double speed, boolean loop) {
+        this(framePool, recording, speed, loop, FrameScheduler.Clock.SYSTEM);
+    }
+
+    public ReplayFrameSource(FramePool framePool, FrameRecording recording, double speed, boolean loop, FrameScheduler.Clock clock) {
+        if (speed < 0) throw new IllegalArgumentException("Wrong speed: " + speed);
+
+        this.framePool = framePool;
+        this.recording = recording;
+        this.speed = speed;
+        this.loop = loop;
+        this.clock = clock;
+    }
+
+    @Override
+    public void listen(FrameSourceListener listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public void setLazyConversion(boolean lazyConversion) {
+        this.lazyConversion = lazyConversion;
+    }
+
+    @Override
+    public boolean isLazyConversion() {
+        return lazyConversion;
+    }
+
+    /**
+     * Start replay on a dedicated thread.
+     */
+    @Override
+    public synchronized boolean start() {
+        if (replayThread != null || recording.getFrameCount() == 0) return false;
+
+        final Thread thread = new Thread(this::replayLoop, THREAD_NAME);
+        replayThread = thread;
+        thread.start();
+        return true;
+    }
+
+    @Override
+    public void requestRelease() {
+        final Thread thread;
+        synchronized (this) {
+            thread = replayThread;
+            replayThread = null;
+        }
+
+        if (thread == null) return;
+        LockSupport.unpark(thread);
+
+        pendingSequence.set(NO_PENDING_FRAME);
+
+        final FrameSourceListener callback = listener;
+        if (callback != null) callback.onSourceStopped();
+    }
+
+    @Override
+    public FrameHolder convertPendingFrame() {
+        final long sequence = pendingSequence.getAndSet(NO_PENDING_FRAME);
+        return sequence == NO_PENDING_FRAME ? null : decode(sequence);
+    }
+
+    public RateCounter getReplayedFrames() {
+        return replayedFrames;
+    }
+
+    @Override
+    public String getStageName() {
+        return "replay";
+    }
+
+    /**
+     * @return frames replaced before being pulled in lazy mode.
+     */
+    @Override
+    public long getDroppedFrames() {
+        return skippedFrames.getTotal();
+    }
+
+    private FrameHolder decode(long sequence) {
+        return recording.decode((int) (sequence % recording.getFrameCount()), framePool, clock.nanoTime(), sequence);
+    }
+
+    private void replayLoop() {
+        final Thread self = Thread.currentThread();
+        final long firstTimestamp = recording.getTimestamp(0);
+        final int frameCount = recording.getFrameCount();
+        /* Sequence numbers keep growing over loops */
+        long loopStart = 0;
+
+        do {
+            final long start = clock.nanoTime();
+
+            for (int index = 0; index < frameCount && replayThread == self; index++) {
+                if (speed != AS_FAST_AS_POSSIBLE) {
+                    final long due = start + (long) ((recording.getTimestamp(index) - firstTimestamp) / speed);
+                    if (!parkUntil(due, self)) break;
+                }
+
+                onFrameDue(loopStart + index);
+            }
+
+            loopStart += frameCount;
+        } while (loop && replayThread == self);
+
+        /* Replay reached the end on its own */
+        if (replayThread == self) requestRelease();
+    }
+
+    /**
+     * @return false if replay has been stopped meanwhile.
+     */
+    private boolean parkUntil(long due, Thread self) {
+        long wait;
+        while ((wait = due - clock.nanoTime()) > 0) {
+            if (replayThread != self) return false;
+            LockSupport.parkNanos(this, wait);
+        }
+
+        return replayThread == self;
+    }
+
+    private void onFrameDue(long sequence) {
+        replayedFrames.increment();
+
+        if (lazyConversion) {
+            if (pendingSequence.getAndSet(sequence) != NO_PENDING_FRAME) skippedFrames.increment();
+            return;
+        }
+
+        final FrameHolder frame = decode(sequence);
+        final FrameSourceListener callback = listener;
+        if (callback != null) {
+            callback.onFrameCaptured(frame);
+        } else {
+            frame.release();
+        }
+    }
+}
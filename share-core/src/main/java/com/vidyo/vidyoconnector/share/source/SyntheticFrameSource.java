@@ -0,0 +1,277 @@
+package com.vidyo.vidyoconnector.share.source;
+
+import com.vidyo.vidyoconnector.share.metrics.RateCounter;
+import com.vidyo.vidyoconnector.share.model.FrameHolder;
+import com.vidyo.vidyoconnector.share.model.FramePool;
+import com.vidyo.vidyoconnector.share.provider.FrameScheduler;
+import com.vidyo.vidyoconnector.share.transform.FrameCopier;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * {@link FrameSource} generating test patterns at a fixed rate, to drive the pipeline without a device.
+ * <p>
+ * Every frame is rendered into an RGBA plane with the configured row padding and copied into a pooled frame
+ * the same way captured images are, so the stride copy is exercised as well.
+ */
+public class SyntheticFrameSource implements FrameSource {
+
+    public enum Pattern {
+        /* Same content every frame, e.g. a slide */
+        STATIC,
+        /* Lines of glyph-like blocks moving up, e.g. a document being scrolled */
+        SCROLLING_TEXT,
+        /* Every pixel changes every frame, worst case for dedup and encoder */
+        NOISE
+    }
+
+    private static final String THREAD_NAME = "ShareSyntheticSource";
+
+    private static final int LINE_HEIGHT = 24;
+    private static final int GLYPH_WIDTH = 12;
+    private static final int GLYPH_HEIGHT = 16;
+    private static final int SCROLL_ROWS_PER_FRAME = 4;
+
+    private static final int WHITE = 0xFFFFFFFF;
+    private static final int INK = 0xFF202020;
+
+    private static final long NO_PENDING_FRAME = -1;
+
+    private final FramePool framePool;
+    private final Pattern pattern;
+    private final int width;
+    private final int height;
+    private final int rowStride;
+    private final FrameScheduler.Clock clock;
+    private final FrameScheduler frameScheduler;
+
+    /* Plane the pattern is rendered into, guarded by this */
+    private final ByteBuffer plane;
+    private long renderedIndex = -1;
+    private int noiseState = 0x9E3779B9;
+
+    private volatile FrameSourceListener listener;
+    private volatile boolean lazyConversion;
+    private volatile Thread generatorThread;
+
+    private final AtomicLong pendingIndex = new AtomicLong(NO_PENDING_FRAME);
+    private long frameIndex;
+
+    private final RateCounter generatedFrames = new RateCounter();
+    private final RateCounter skippedFrames = new RateCounter();
+
+    /**
+     * @param rowPadding bytes appended to every row, as image readers do for aligned strides.
+     */
+    public SyntheticFrameSource(FramePool framePool, Pattern pattern, int width, int height, int rowPadding, int fps) {
+        this(framePool, pattern, width, height, rowPadding, fps, FrameScheduler.Clock.SYSTEM);
+    }
+
+    public SyntheticFrameSource(FramePool framePool, Pattern pattern, int width, int height, int rowPadding, int fps,
+                                FrameScheduler.Clock clock) {
+        if (width <= 0 || height <= 0) throw new IllegalArgumentException("Wrong size: " + width + "x" + height);
+        if (rowPadding < 0) throw new IllegalArgumentException("Wrong row padding: " + rowPadding);
+        if (fps <= 0) throw new IllegalArgumentException("Wrong FPS: " + fps);
+
+        this.framePool = framePool;
+        this.pattern = pattern;
+        this.width = width;
+        this.height = height;
+        this.rowStride = width * FrameCopier.RGBA_PIXEL_STRIDE + rowPadding;
+        this.clock = clock;
+        this.frameScheduler = new FrameScheduler(TimeUnit.SECONDS.toNanos(1) / fps, FrameScheduler.LatePolicy.SKIP);
+        this.plane = ByteBuffer.allocateDirect(rowStride * height).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    @Override
+    public void listen(FrameSourceListener listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public void setLazyConversion(boolean lazyConversion) {
+        this.lazyConversion = lazyConversion;
+    }
+
+    @Override
+    public boolean isLazyConversion() {
+        return lazyConversion;
+    }
+
+    /**
+     * Start generating frames on a dedicated thread.
+     */
+    @Override
+    public synchronized boolean start() {
+        if (generatorThread != null) return false;
+
+        frameScheduler.start(clock.nanoTime());
+
+        final Thread thread = new Thread(this::generateLoop, THREAD_NAME);
+        generatorThread = thread;
+        thread.start();
+        return true;
+    }
+
+    @Override
+    public void requestRelease() {
+        final Thread thread;
+        synchronized (this) {
+            thread = generatorThread;
+            generatorThread = null;
+        }
+
+        if (thread == null) return;
+        LockSupport.unpark(thread);
+
+        pendingIndex.set(NO_PENDING_FRAME);
+
+        final FrameSourceListener callback = listener;
+        if (callback != null) callback.onSourceStopped();
+    }
+
+    @Override
+    public FrameHolder convertPendingFrame() {
+        final long index = pendingIndex.getAndSet(NO_PENDING_FRAME);
+        return index == NO_PENDING_FRAME ? null : produceFrame(index);
+    }
+
+    /**
+     * Render and copy frame of the given index, independent of the generator thread.
+     *
+     * @return frame owned by the caller, index is its sequence number.
+     */
+    public synchronized FrameHolder produceFrame(long index) {
+        render(index);
+
+        final FrameHolder frame = framePool.lease(FrameCopier.packedSize(width, height), width, height, clock.nanoTime(), index);
+        FrameCopier.copy(plane, rowStride, FrameCopier.RGBA_PIXEL_STRIDE, width, height, frame.byteArray);
+        return frame;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getRowStride() {
+        return rowStride;
+    }
+
+    public FrameScheduler getFrameScheduler() {
+        return frameScheduler;
+    }
+
+    public RateCounter getGeneratedFrames() {
+        return generatedFrames;
+    }
+
+    @Override
+    public String getStageName() {
+        return "synthetic";
+    }
+
+    /**
+     * @return frames replaced before being pulled in lazy mode plus ticks the generator fell behind on.
+     */
+    @Override
+    public long getDroppedFrames() {
+        return skippedFrames.getTotal() + frameScheduler.getSkippedTicks();
+    }
+
+    private void generateLoop() {
+        final Thread self = Thread.currentThread();
+
+        while (generatorThread == self) {
+            final long wait = frameScheduler.timeToNextTick(clock.nanoTime());
+            if (wait > 0) {
+                LockSupport.parkNanos(this, wait);
+                continue;
+            }
+
+            onTick(frameIndex++);
+            frameScheduler.advance(clock.nanoTime());
+        }
+    }
+
+    private void onTick(long index) {
+        generatedFrames.increment();
+
+        if (lazyConversion) {
+            if (pendingIndex.getAndSet(index) != NO_PENDING_FRAME) skippedFrames.increment();
+            return;
+        }
+
+        final FrameHolder frame = produceFrame(index);
+        final FrameSourceListener callback = listener;
+        if (callback != null) {
+            callback.onFrameCaptured(frame);
+        } else {
+            frame.release();
+        }
+    }
+
+    private void render(long index) {
+        switch (pattern) {
+            case STATIC:
+                /* Rendered once, content never changes */
+                if (renderedIndex < 0) renderText(0);
+                break;
+            case SCROLLING_TEXT:
+                if (index != renderedIndex) renderText(index * SCROLL_ROWS_PER_FRAME);
+                break;
+            case NOISE:
+                if (index != renderedIndex) renderNoise();
+                break;
+        }
+
+        renderedIndex = index;
+    }
+
+    /**
+     * Dark glyph blocks on white background, every line with its own pseudo random glyph layout.
+     */
+    private void renderText(long scrollOffset) {
+        for (int y = 0; y < height; y++) {
+            final long documentRow = y + scrollOffset;
+            final long line = documentRow / LINE_HEIGHT;
+            final boolean glyphRow = documentRow % LINE_HEIGHT < GLYPH_HEIGHT;
+
+            int position = y * rowStride;
+            for (int x = 0; x < width; x++, position += FrameCopier.RGBA_PIXEL_STRIDE) {
+                final boolean ink = glyphRow && x % GLYPH_WIDTH < GLYPH_WIDTH - 2 && isGlyph(line, x / GLYPH_WIDTH);
+                plane.putInt(position, ink ? INK : WHITE);
+            }
+        }
+    }
+
+    private static boolean isGlyph(long line, int column) {
+        long hash = line * 0x9E3779B97F4A7C15L + column * 0xC2B2AE3D27D4EB4FL;
+        hash ^= hash >>> 29;
+        /* Roughly 3 of 4 positions hold a glyph, the rest are spaces */
+        return (hash & 3) != 0;
+    }
+
+    private void renderNoise() {
+        int state = noiseState;
+
+        for (int y = 0; y < height; y++) {
+            int position = y * rowStride;
+            for (int x = 0; x < width; x++, position += FrameCopier.RGBA_PIXEL_STRIDE) {
+                state ^= state << 13;
+                state ^= state >>> 17;
+                state ^= state << 5;
+                plane.putInt(position, state | 0xFF000000);
+            }
+        }
+
+        noiseState = state;
+    }
+}
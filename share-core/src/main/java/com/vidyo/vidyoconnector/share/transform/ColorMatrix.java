@@ -0,0 +1,39 @@
+package com.vidyo.vidyoconnector.share.transform;
+
+/**
+ * RGB to limited range YCbCr coefficients in 8 bit fixed point.
+ */
+public enum ColorMatrix {
+    /* SD content */
+    BT601(66, 129, 25, -38, -74, 112, 112, -94, -18),
+    /* HD content */
+    BT709(47, 157, 16, -26, -86, 112, 112, -102, -10);
+
+    final int yr, yg, yb;
+    final int ur, ug, ub;
+    final int vr, vg, vb;
+
+    ColorMatrix(int yr, int yg, int yb, int ur, int ug, int ub, int vr, int vg, int vb) {
+        this.yr = yr;
+        this.yg = yg;
+        this.yb = yb;
+        this.ur = ur;
+        this.ug = ug;
+        this.ub = ub;
+        this.vr = vr;
+        this.vg = vg;
+        this.vb = vb;
+    }
+
+    int y(int r, int g, int b) {
+        return ((yr * r + yg * g + yb * b + 128) >> 8) + 16;
+    }
+
+    int u(int r, int g, int b) {
+        return ((ur * r + ug * g + ub * b + 128) >> 8) + 128;
+    }
+
+    int v(int r, int g, int b) {
+        return ((vr * r + vg * g + vb * b + 128) >> 8) + 128;
+    }
+}
@@ -0,0 +1,51 @@
+package com.vidyo.vidyoconnector.share.transform;
+
+import com.vidyo.vidyoconnector.share.model.FrameHolder;
+import com.vidyo.vidyoconnector.share.model.FramePool;
+import com.vidyo.vidyoconnector.share.model.ShareConstraints;
+
+/**
+ * Downscale captured frames to the max size allowed by {@link ShareConstraints} before they are pushed,
+ * so that full resolution buffers never cross to the library.
+ */
+public class ConstraintScaler {
+
+    private final FramePool framePool;
+    private final FrameScaler frameScaler;
+
+    private ShareConstraints shareConstraints;
+
+    public ConstraintScaler(FramePool framePool, StripeExecutor stripeExecutor) {
+        this.framePool = framePool;
+        this.frameScaler = new FrameScaler(stripeExecutor);
+    }
+
+    /**
+     * @param frame frame owned by the caller.
+     * @return frame within constraints owned by the caller. Input frame is returned as is if it already fits,
+     * otherwise it is released and a scaled copy is returned. If scaling fails, the input frame is released as well.
+     */
+    public synchronized FrameHolder apply(FrameHolder frame) {
+        if (ShareConstraints.shouldUpdateConstraints(shareConstraints, frame)) {
+            shareConstraints = new ShareConstraints(frame.width, frame.height);
+        }
+
+        final int width = shareConstraints.maxWidth;
+        final int height = shareConstraints.maxHeight;
+        if (width >= frame.width && height >= frame.height) return frame;
+
+        final FrameHolder scaled = framePool.leaseDerived(FrameCopier.packedSize(width, height), width, height, frame);
+        try {
+            frameScaler.scale(frame.byteArray, frame.width, frame.height, scaled.byteArray, width, height,
+                    FrameScaler.filterFor(frame.width, width));
+        } catch (RuntimeException e) {
+            /* Caller gets nothing to release, the scaled buffer goes back to the pool here */
+            scaled.release();
+            throw e;
+        } finally {
+            frame.release();
+        }
+
+        return scaled;
+    }
+}
@@ -0,0 +1,204 @@
+package com.vidyo.vidyoconnector.share.transform;
+
+import com.vidyo.vidyoconnector.share.model.FrameHolder;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Split packed RGBA frames into fixed tiles and detect tiles changed since the previous frame.
+ * <p>
+ * Tile rows can be processed in parallel with {@link #processTileRows(ByteBuffer, int, int)} as long as
+ * ranges don't overlap, {@link #prepare(int, int)} and {@link #complete()} have to be called around them.
+ * {@link #detect(FrameHolder)} does it on the {@link StripeExecutor} if one is provided.
+ */
+public class DirtyRegionDetector {
+
+    public static final int DEFAULT_TILE_SIZE = 64;
+
+    private final int tileSize;
+
+    private int width;
+    private int height;
+    private int tileColumns;
+    private int tileRows;
+
+    private long[] previousHashes = new long[0];
+    private long[] currentHashes = new long[0];
+    private boolean[] dirtyTiles = new boolean[0];
+    private long[] dirtyBitmap = new long[0];
+    private boolean hasPrevious;
+
+    private int dirtyTileCount;
+    private float changedArea;
+
+    private final StripeExecutor stripeExecutor;
+    private final StripeExecutor.StripeTask detectTask = new StripeExecutor.StripeTask() {
+        @Override
+        public void run(int fromRow, int toRow) {
+            /* Hashing uses absolute reads only, so the buffer can be shared between bands */
+            processTileRows(taskData, fromRow, toRow);
+        }
+    };
+    private ByteBuffer taskData;
+
+    public DirtyRegionDetector() {
+        this(DEFAULT_TILE_SIZE, null);
+    }
+
+    /**
+     * @param stripeExecutor {@link StripeExecutor} to spread tile rows over, null to detect on the calling thread.
+     */
+    public DirtyRegionDetector(int tileSize, StripeExecutor stripeExecutor) {
+        this.tileSize = tileSize;
+        this.stripeExecutor = stripeExecutor;
+    }
+
+    /**
+     * Detect dirty tiles of the whole frame.
+     */
+    public synchronized void detect(FrameHolder frame) {
+        prepare(frame.width, frame.height);
+
+        final ByteBuffer data = FrameHasher.wrap(frame.byteArray);
+        if (stripeExecutor == null) {
+            processTileRows(data, 0, tileRows);
+        } else {
+            taskData = data;
+            try {
+                stripeExecutor.execute(tileRows, 1, detectTask);
+            } finally {
+                taskData = null;
+            }
+        }
+
+        complete();
+    }
+
+    /**
+     * Prepare for a new frame. Tile history is dropped if frame size changed.
+     */
+    public void prepare(int width, int height) {
+        if (width == this.width && height == this.height) return;
+
+        this.width = width;
+        this.height = height;
+        this.tileColumns = (width + tileSize - 1) / tileSize;
+        this.tileRows = (height + tileSize - 1) / tileSize;
+
+        final int tiles = tileColumns * tileRows;
+        previousHashes = new long[tiles];
+        currentHashes = new long[tiles];
+        dirtyTiles = new boolean[tiles];
+        dirtyBitmap = new long[(tiles + 63) >>> 6];
+        hasPrevious = false;
+    }
+
+    /**
+     * Hash tile rows in range [fromTileRow, toTileRow) and mark tiles that differ from the previous frame.
+     *
+     * @param data frame wrapped with {@link FrameHasher#wrap(byte[])}.
+     */
+    public void processTileRows(ByteBuffer data, int fromTileRow, int toTileRow) {
+        final int rowBytes = width * FrameCopier.RGBA_PIXEL_STRIDE;
+        final int tileBytes = tileSize * FrameCopier.RGBA_PIXEL_STRIDE;
+
+        for (int tileRow = fromTileRow; tileRow < toTileRow; tileRow++) {
+            final int firstTile = tileRow * tileColumns;
+            for (int column = 0; column < tileColumns; column++) currentHashes[firstTile + column] = 0;
+
+            final int fromRow = tileRow * tileSize;
+            final int toRow = Math.min(fromRow + tileSize, height);
+
+            for (int row = fromRow; row < toRow; row++) {
+                final int rowOffset = row * rowBytes;
+
+                for (int column = 0; column < tileColumns; column++) {
+                    final int offset = column * tileBytes;
+                    final int length = Math.min(tileBytes, rowBytes - offset);
+                    final int tile = firstTile + column;
+                    currentHashes[tile] = FrameHasher.hash(data, rowOffset + offset, length, currentHashes[tile]);
+                }
+            }
+
+            for (int column = 0; column < tileColumns; column++) {
+                final int tile = firstTile + column;
+                dirtyTiles[tile] = !hasPrevious || currentHashes[tile] != previousHashes[tile];
+            }
+        }
+    }
+
+    /**
+     * Finish frame: build dirty bitmap, changed area and keep hashes for the next frame.
+     */
+    public void complete() {
+        final int tiles = tileColumns * tileRows;
+        Arrays.fill(dirtyBitmap, 0);
+
+        long dirtyPixels = 0;
+        int count = 0;
+
+        for (int tile = 0; tile < tiles; tile++) {
+            if (!dirtyTiles[tile]) continue;
+
+            dirtyBitmap[tile >>> 6] |= 1L << tile;
+            count++;
+
+            final int column = tile % tileColumns;
+            final int row = tile / tileColumns;
+            final int tileWidth = Math.min(tileSize, width - column * tileSize);
+            final int tileHeight = Math.min(tileSize, height - row * tileSize);
+            dirtyPixels += (long) tileWidth * tileHeight;
+        }
+
+        dirtyTileCount = count;
+        changedArea = width == 0 || height == 0 ? 0 : dirtyPixels * 100f / ((long) width * height);
+
+        final long[] swap = previousHashes;
+        previousHashes = currentHashes;
+        currentHashes = swap;
+        hasPrevious = true;
+    }
+
+    /**
+     * Forget previous frame, next one will be fully dirty.
+     */
+    public void reset() {
+        hasPrevious = false;
+    }
+
+    public boolean isTileDirty(int column, int row) {
+        final int tile = row * tileColumns + column;
+        return (dirtyBitmap[tile >>> 6] & 1L << tile) != 0;
+    }
+
+    /**
+     * @return dirty tiles bitmap, bit (row * tileColumns + column) is set for changed tile.
+     */
+    public long[] getDirtyBitmap() {
+        return dirtyBitmap;
+    }
+
+    public int getDirtyTileCount() {
+        return dirtyTileCount;
+    }
+
+    /**
+     * @return changed area of the last frame in percent.
+     */
+    public float getChangedArea() {
+        return changedArea;
+    }
+
+    public int getTileSize() {
+        return tileSize;
+    }
+
+    public int getTileColumns() {
+        return tileColumns;
+    }
+
+    public int getTileRows() {
+        return tileRows;
+    }
+}
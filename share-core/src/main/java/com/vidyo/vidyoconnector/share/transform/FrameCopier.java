@@ -0,0 +1,84 @@
+package com.vidyo.vidyoconnector.share.transform;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Copies RGBA pixels out of a strided plane buffer into a tightly packed array.
+ * Rows are copied straight from the plane, so row padding is skipped without any intermediate bitmap.
+ * A crop rectangle is applied in the same pass, so pixels outside of it are never touched.
+ */
+public final class FrameCopier {
+
+    public static final int RGBA_PIXEL_STRIDE = 4;
+
+    private FrameCopier() {
+    }
+
+    /**
+     * @return size in bytes of a tightly packed RGBA frame.
+     */
+    public static int packedSize(int width, int height) {
+        return width * height * RGBA_PIXEL_STRIDE;
+    }
+
+    /**
+     * Copy plane content into destination with a single pass.
+     *
+     * @param source      plane buffer, position and limit are left untouched.
+     * @param rowStride   distance in bytes between the starts of two consecutive rows.
+     * @param pixelStride distance in bytes between two consecutive pixels within a row.
+     * @param width       frame width in pixels.
+     * @param height      frame height in pixels.
+     * @param destination packed RGBA output of at least {@link #packedSize(int, int)} bytes.
+     */
+    public static void copy(ByteBuffer source, int rowStride, int pixelStride, int width, int height, byte[] destination) {
+        copy(source, rowStride, pixelStride, 0, 0, width, height, destination);
+    }
+
+    /**
+     * Copy a rectangle of the plane into destination with a single pass.
+     *
+     * @param left   first column of the rectangle.
+     * @param top    first row of the rectangle.
+     * @param width  rectangle width in pixels, packed output width.
+     * @param height rectangle height in pixels, packed output height.
+     * @see #copy(ByteBuffer, int, int, int, int, byte[])
+     */
+    public static void copy(ByteBuffer source, int rowStride, int pixelStride, int left, int top, int width, int height,
+                            byte[] destination) {
+        final int rowBytes = width * RGBA_PIXEL_STRIDE;
+        if (destination.length < rowBytes * height) {
+            throw new IllegalArgumentException("Destination is too small: " + destination.length + " < " + rowBytes * height);
+        }
+
+        final ByteBuffer src = source.duplicate();
+        final int origin = top * rowStride + left * pixelStride;
+
+        if (pixelStride == RGBA_PIXEL_STRIDE && rowStride == rowBytes) {
+            // No padding and full rows: whole rectangle is one contiguous block
+            src.position(origin);
+            src.get(destination, 0, rowBytes * height);
+            return;
+        }
+
+        if (pixelStride == RGBA_PIXEL_STRIDE) {
+            for (int row = 0; row < height; row++) {
+                src.position(origin + row * rowStride);
+                src.get(destination, row * rowBytes, rowBytes);
+            }
+            return;
+        }
+
+        // Unusual layout, pick pixels one by one
+        for (int row = 0; row < height; row++) {
+            final int rowStart = origin + row * rowStride;
+            int out = row * rowBytes;
+
+            for (int column = 0; column < width; column++) {
+                src.position(rowStart + column * pixelStride);
+                src.get(destination, out, RGBA_PIXEL_STRIDE);
+                out += RGBA_PIXEL_STRIDE;
+            }
+        }
+    }
+}
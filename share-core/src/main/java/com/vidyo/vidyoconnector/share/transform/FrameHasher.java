@@ -0,0 +1,119 @@
+package com.vidyo.vidyoconnector.share.transform;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Fast non-cryptographic content hash (XXH64) for frame buffers.
+ */
+public final class FrameHasher {
+
+    private static final long PRIME_1 = 0x9E3779B185EBCA87L;
+    private static final long PRIME_2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long PRIME_3 = 0x165667B19E3779F9L;
+    private static final long PRIME_4 = 0x85EBCA77C2B2AE63L;
+    private static final long PRIME_5 = 0x27D4EB2F165667C5L;
+
+    private FrameHasher() {
+    }
+
+    /**
+     * Hash buffer content in range.
+     */
+    public static long hash(byte[] data, int offset, int length, long seed) {
+        return hash(wrap(data), offset, length, seed);
+    }
+
+    /**
+     * Wrap frame data for repeated hashing of its ranges with {@link #hash(ByteBuffer, int, int, long)}.
+     */
+    public static ByteBuffer wrap(byte[] data) {
+        return ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Hash content of buffer created with {@link #wrap(byte[])} in range.
+     */
+    public static long hash(ByteBuffer buffer, int offset, int length, long seed) {
+        final int end = offset + length;
+        int position = offset;
+        long hash;
+
+        if (length >= 32) {
+            long v1 = seed + PRIME_1 + PRIME_2;
+            long v2 = seed + PRIME_2;
+            long v3 = seed;
+            long v4 = seed - PRIME_1;
+
+            final int limit = end - 32;
+            do {
+                v1 = round(v1, buffer.getLong(position));
+                v2 = round(v2, buffer.getLong(position + 8));
+                v3 = round(v3, buffer.getLong(position + 16));
+                v4 = round(v4, buffer.getLong(position + 24));
+                position += 32;
+            } while (position <= limit);
+
+            hash = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+            hash = mergeRound(hash, v1);
+            hash = mergeRound(hash, v2);
+            hash = mergeRound(hash, v3);
+            hash = mergeRound(hash, v4);
+        } else {
+            hash = seed + PRIME_5;
+        }
+
+        hash += length;
+
+        while (position + 8 <= end) {
+            hash ^= round(0, buffer.getLong(position));
+            hash = Long.rotateLeft(hash, 27) * PRIME_1 + PRIME_4;
+            position += 8;
+        }
+
+        if (position + 4 <= end) {
+            hash ^= (buffer.getInt(position) & 0xFFFFFFFFL) * PRIME_1;
+            hash = Long.rotateLeft(hash, 23) * PRIME_2 + PRIME_3;
+            position += 4;
+        }
+
+        while (position < end) {
+            hash ^= (buffer.get(position) & 0xFF) * PRIME_5;
+            hash = Long.rotateLeft(hash, 11) * PRIME_1;
+            position++;
+        }
+
+        hash ^= hash >>> 33;
+        hash *= PRIME_2;
+        hash ^= hash >>> 29;
+        hash *= PRIME_3;
+        hash ^= hash >>> 32;
+        return hash;
+    }
+
+    /**
+     * Hash every {@code rowStep}-th row of a packed frame only. Much cheaper, but changes
+     * located entirely in skipped rows are not detected.
+     */
+    public static long hashSampled(byte[] data, int rowBytes, int height, int rowStep) {
+        final ByteBuffer buffer = wrap(data);
+
+        long hash = 0;
+        for (int row = 0; row < height; row += rowStep) {
+            hash = hash(buffer, row * rowBytes, rowBytes, hash);
+        }
+
+        return hash;
+    }
+
+    private static long round(long accumulator, long input) {
+        accumulator += input * PRIME_2;
+        accumulator = Long.rotateLeft(accumulator, 31);
+        return accumulator * PRIME_1;
+    }
+
+    private static long mergeRound(long accumulator, long value) {
+        accumulator ^= round(0, value);
+        return accumulator * PRIME_1 + PRIME_4;
+    }
+}
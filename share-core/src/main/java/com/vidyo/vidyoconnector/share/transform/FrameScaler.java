@@ -0,0 +1,214 @@
+package com.vidyo.vidyoconnector.share.transform;
+
+/**
+ * CPU resampler for packed RGBA frames.
+ * <p>
+ * Sampling tables are cached between calls with the same geometry, so steady state scaling doesn't allocate.
+ * Rows can be scaled in disjoint ranges from several threads once {@link #prepare(int, int, int, int, Filter)} is done,
+ * {@link #scale(byte[], int, int, byte[], int, int, Filter)} does it on the {@link StripeExecutor} if one is provided.
+ */
+public class FrameScaler {
+
+    public enum Filter {
+        /* 2x2 taps, good for scale factors above 0.5 */
+        BILINEAR,
+        /* Average of all covered source pixels, alias free for big reductions */
+        BOX
+    }
+
+    private static final int PIXEL = FrameCopier.RGBA_PIXEL_STRIDE;
+    private static final int WEIGHT_BITS = 8;
+    private static final int WEIGHT_ONE = 1 << WEIGHT_BITS;
+
+    private int srcWidth = -1;
+    private int srcHeight = -1;
+    private int dstWidth = -1;
+    private int dstHeight = -1;
+    private Filter filter;
+
+    /* Bilinear: first tap offset, second tap offset and weight of the second tap per column/row.
+     * Box: first and last (exclusive) source column/row per destination column/row. */
+    private int[] xFrom;
+    private int[] xTo;
+    private int[] xWeight;
+    private int[] yFrom;
+    private int[] yTo;
+    private int[] yWeight;
+
+    private final StripeExecutor stripeExecutor;
+    private final StripeExecutor.StripeTask scaleTask = new StripeExecutor.StripeTask() {
+        @Override
+        public void run(int fromRow, int toRow) {
+            scaleRows(taskSrc, taskDst, fromRow, toRow);
+        }
+    };
+    private byte[] taskSrc;
+    private byte[] taskDst;
+
+    public FrameScaler() {
+        this(null);
+    }
+
+    /**
+     * @param stripeExecutor {@link StripeExecutor} to spread rows over, null to scale on the calling thread.
+     */
+    public FrameScaler(StripeExecutor stripeExecutor) {
+        this.stripeExecutor = stripeExecutor;
+    }
+
+    /**
+     * Pick filter for given reduction.
+     */
+    public static Filter filterFor(int srcWidth, int dstWidth) {
+        return dstWidth * 2 <= srcWidth ? Filter.BOX : Filter.BILINEAR;
+    }
+
+    /**
+     * Scale whole frame.
+     */
+    public synchronized void scale(byte[] src, int srcWidth, int srcHeight, byte[] dst, int dstWidth, int dstHeight, Filter filter) {
+        prepare(srcWidth, srcHeight, dstWidth, dstHeight, filter);
+
+        if (stripeExecutor == null) {
+            scaleRows(src, dst, 0, dstHeight);
+            return;
+        }
+
+        taskSrc = src;
+        taskDst = dst;
+        try {
+            stripeExecutor.execute(dstHeight, 1, scaleTask);
+        } finally {
+            taskSrc = null;
+            taskDst = null;
+        }
+    }
+
+    /**
+     * Build sampling tables for the given geometry, no-op if it didn't change.
+     */
+    public void prepare(int srcWidth, int srcHeight, int dstWidth, int dstHeight, Filter filter) {
+        if (srcWidth == this.srcWidth && srcHeight == this.srcHeight
+                && dstWidth == this.dstWidth && dstHeight == this.dstHeight && filter == this.filter) return;
+
+        this.srcWidth = srcWidth;
+        this.srcHeight = srcHeight;
+        this.dstWidth = dstWidth;
+        this.dstHeight = dstHeight;
+        this.filter = filter;
+
+        xFrom = new int[dstWidth];
+        xTo = new int[dstWidth];
+        xWeight = new int[dstWidth];
+        yFrom = new int[dstHeight];
+        yTo = new int[dstHeight];
+        yWeight = new int[dstHeight];
+
+        if (filter == Filter.BOX) {
+            boxTable(srcWidth, dstWidth, xFrom, xTo);
+            boxTable(srcHeight, dstHeight, yFrom, yTo);
+        } else {
+            bilinearTable(srcWidth, dstWidth, xFrom, xTo, xWeight);
+            bilinearTable(srcHeight, dstHeight, yFrom, yTo, yWeight);
+        }
+    }
+
+    /**
+     * Scale destination rows in range [fromRow, toRow).
+     */
+    public void scaleRows(byte[] src, byte[] dst, int fromRow, int toRow) {
+        if (filter == Filter.BOX) {
+            boxRows(src, dst, fromRow, toRow);
+        } else {
+            bilinearRows(src, dst, fromRow, toRow);
+        }
+    }
+
+    private void bilinearRows(byte[] src, byte[] dst, int fromRow, int toRow) {
+        final int srcRowBytes = srcWidth * PIXEL;
+
+        for (int y = fromRow; y < toRow; y++) {
+            final int row0 = yFrom[y] * srcRowBytes;
+            final int row1 = yTo[y] * srcRowBytes;
+            final int fy = yWeight[y];
+            final int fy0 = WEIGHT_ONE - fy;
+            int out = y * dstWidth * PIXEL;
+
+            for (int x = 0; x < dstWidth; x++) {
+                final int fx = xWeight[x];
+                final int fx0 = WEIGHT_ONE - fx;
+                final int p00 = row0 + xFrom[x] * PIXEL;
+                final int p01 = row0 + xTo[x] * PIXEL;
+                final int p10 = row1 + xFrom[x] * PIXEL;
+                final int p11 = row1 + xTo[x] * PIXEL;
+
+                dst[out++] = bilinear(src, p00, p01, p10, p11, fx0, fx, fy0, fy);
+                dst[out++] = bilinear(src, p00 + 1, p01 + 1, p10 + 1, p11 + 1, fx0, fx, fy0, fy);
+                dst[out++] = bilinear(src, p00 + 2, p01 + 2, p10 + 2, p11 + 2, fx0, fx, fy0, fy);
+                dst[out++] = bilinear(src, p00 + 3, p01 + 3, p10 + 3, p11 + 3, fx0, fx, fy0, fy);
+            }
+        }
+    }
+
+    private static byte bilinear(byte[] src, int p00, int p01, int p10, int p11, int fx0, int fx, int fy0, int fy) {
+        final int top = (src[p00] & 0xFF) * fx0 + (src[p01] & 0xFF) * fx;
+        final int bottom = (src[p10] & 0xFF) * fx0 + (src[p11] & 0xFF) * fx;
+        return (byte) ((top * fy0 + bottom * fy + (1 << (2 * WEIGHT_BITS - 1))) >>> (2 * WEIGHT_BITS));
+    }
+
+    private void boxRows(byte[] src, byte[] dst, int fromRow, int toRow) {
+        final int srcRowBytes = srcWidth * PIXEL;
+
+        for (int y = fromRow; y < toRow; y++) {
+            final int rowFrom = yFrom[y];
+            final int rowTo = yTo[y];
+            int out = y * dstWidth * PIXEL;
+
+            for (int x = 0; x < dstWidth; x++) {
+                final int columnFrom = xFrom[x];
+                final int columnTo = xTo[x];
+                final int count = (rowTo - rowFrom) * (columnTo - columnFrom);
+
+                int r = 0, g = 0, b = 0, a = 0;
+                for (int row = rowFrom; row < rowTo; row++) {
+                    int in = row * srcRowBytes + columnFrom * PIXEL;
+                    for (int column = columnFrom; column < columnTo; column++) {
+                        r += src[in] & 0xFF;
+                        g += src[in + 1] & 0xFF;
+                        b += src[in + 2] & 0xFF;
+                        a += src[in + 3] & 0xFF;
+                        in += PIXEL;
+                    }
+                }
+
+                final int half = count >> 1;
+                dst[out++] = (byte) ((r + half) / count);
+                dst[out++] = (byte) ((g + half) / count);
+                dst[out++] = (byte) ((b + half) / count);
+                dst[out++] = (byte) ((a + half) / count);
+            }
+        }
+    }
+
+    private static void bilinearTable(int srcSize, int dstSize, int[] from, int[] to, int[] weight) {
+        for (int i = 0; i < dstSize; i++) {
+            /* Align pixel centers, 8 bits of fraction */
+            final long center = ((2L * i + 1) * srcSize * WEIGHT_ONE) / (2L * dstSize) - WEIGHT_ONE / 2;
+            final long clamped = Math.max(0, center);
+
+            final int index = (int) Math.min(clamped >> WEIGHT_BITS, srcSize - 1);
+            from[i] = index;
+            to[i] = Math.min(index + 1, srcSize - 1);
+            weight[i] = index == srcSize - 1 ? 0 : (int) (clamped & (WEIGHT_ONE - 1));
+        }
+    }
+
+    private static void boxTable(int srcSize, int dstSize, int[] from, int[] to) {
+        for (int i = 0; i < dstSize; i++) {
+            final int start = (int) ((long) i * srcSize / dstSize);
+            final int end = (int) ((long) (i + 1) * srcSize / dstSize);
+            from[i] = start;
+            to[i] = Math.max(end, start + 1);
+        }
+    }
+}
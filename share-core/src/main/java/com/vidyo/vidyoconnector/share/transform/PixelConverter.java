@@ -0,0 +1,17 @@
+package com.vidyo.vidyoconnector.share.transform;
+
+import com.vidyo.vidyoconnector.share.model.OutputFormat;
+
+/**
+ * Converts packed RGBA frames into another pixel layout.
+ */
+public interface PixelConverter {
+
+    OutputFormat getOutputFormat();
+
+    /**
+     * @param rgba   packed RGBA source.
+     * @param output destination of at least {@link OutputFormat#frameSize(int, int)} bytes.
+     */
+    void convert(byte[] rgba, int width, int height, byte[] output);
+}
@@ -0,0 +1,265 @@
+package com.vidyo.vidyoconnector.share.transform;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs per-pixel work split into horizontal bands of rows, with helper tasks on an {@link Executor}.
+ * <p>
+ * The calling thread claims bands itself until none is left and then waits only for bands that helpers have
+ * already claimed, so a job completes even if no helper ever gets a thread. Jobs are independent: several
+ * callers can run jobs at once, e.g. two pipeline stages sharing one pool.
+ * <p>
+ * Jobs run in a few slots allocated up front and reused for every call, a call finding all of them busy processes
+ * its rows on the calling thread alone. Helpers still queued from an earlier job of a slot help its next job, so
+ * they aren't submitted again.
+ */
+public class StripeExecutor {
+
+    /**
+     * Work on rows in range [fromRow, toRow). Has to be safe for concurrent calls with disjoint ranges.
+     */
+    public interface StripeTask {
+
+        void run(int fromRow, int toRow);
+    }
+
+    private static final String THREAD_NAME = "ShareStripeWorker-";
+    private static final long KEEP_ALIVE_SECONDS = 30;
+    /* Jobs running at once, one per pipeline stage doing per-pixel work is enough */
+    private static final int MAX_JOBS = 4;
+
+    private final Executor helperExecutor;
+    /* Pool created by this executor, null if helpers run on a shared one */
+    private final ExecutorService ownPool;
+    private final int parallelism;
+    private final Job[] jobs = new Job[MAX_JOBS];
+
+    private volatile boolean isShutdown;
+
+    /**
+     * @return number of stripes worth running on this device.
+     */
+    public static int defaultParallelism() {
+        return Math.max(1, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Executor with its own helper threads.
+     *
+     * @param parallelism number of stripes processed at once, including the calling thread.
+     */
+    public StripeExecutor(int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
+        this.ownPool = this.parallelism > 1 ? createPool(this.parallelism - 1) : null;
+        this.helperExecutor = ownPool;
+        createJobs();
+    }
+
+    /**
+     * Executor running helpers on shared threads, which are left running on {@link #shutdown()}.
+     *
+     * @param helperExecutor runs helper tasks. Helpers queued behind other work just find nothing left to do.
+     * @param parallelism    number of stripes processed at once, including the calling thread.
+     */
+    public StripeExecutor(Executor helperExecutor, int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
+        this.ownPool = null;
+        this.helperExecutor = helperExecutor;
+        createJobs();
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Process all rows and return once every band is done.
+     *
+     * @param rows      total number of rows.
+     * @param alignment band bounds are multiple of it, e.g. 2 for 4:2:0 chroma row pairs.
+     * @param task      work to be done on every band.
+     */
+    public void execute(int rows, int alignment, StripeTask task) {
+        final int stripes = parallelism;
+
+        if (stripes == 1 || rows <= alignment || isShutdown) {
+            task.run(0, rows);
+            return;
+        }
+
+        int perStripe = (rows + stripes - 1) / stripes;
+        perStripe = (perStripe + alignment - 1) / alignment * alignment;
+
+        final Job job = acquireJob();
+        if (job == null) {
+            task.run(0, rows);
+            return;
+        }
+
+        try {
+            final int jobStripes = (rows + perStripe - 1) / perStripe;
+            job.start(task, rows, perStripe, jobStripes);
+
+            for (int i = 1 + job.queuedHelpers.get(); i < jobStripes; i++) {
+                job.queuedHelpers.incrementAndGet();
+                try {
+                    helperExecutor.execute(job);
+                } catch (RejectedExecutionException e) {
+                    /* Shut down meanwhile, the caller does the rest */
+                    job.queuedHelpers.decrementAndGet();
+                    break;
+                }
+            }
+
+            job.work();
+            job.await();
+        } finally {
+            job.finish();
+        }
+    }
+
+    /**
+     * Stop own helper threads. Jobs submitted afterwards run on the calling thread.
+     */
+    public void shutdown() {
+        isShutdown = true;
+        if (ownPool != null) ownPool.shutdown();
+    }
+
+    private void createJobs() {
+        for (int i = 0; i < jobs.length; i++) jobs[i] = new Job();
+    }
+
+    /**
+     * @return free job slot, null if all of them are busy.
+     */
+    private Job acquireJob() {
+        for (Job job : jobs) {
+            if (job.inUse.compareAndSet(false, true)) return job;
+        }
+
+        return null;
+    }
+
+    /**
+     * Every slot keeps less than one helper per thread queued, so the queue never runs full.
+     */
+    private static ExecutorService createPool(int threads) {
+        final AtomicInteger threadCount = new AtomicInteger();
+        final ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(MAX_JOBS * threads), runnable -> {
+            final Thread thread = new Thread(runnable, THREAD_NAME + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    /**
+     * Slot running one call of {@link #execute(int, int, StripeTask)} at a time. Worked on by the caller and by
+     * every helper, each of them claims stripes until none is left.
+     * <p>
+     * Helpers may run long after the call they were submitted for. Stripes are claimed with a compare and set on
+     * the generation of the job together with the next stripe, and a finished job is closed before the slot is
+     * reused, so a late helper either helps the current job or finds nothing to do.
+     */
+    private static final class Job implements Runnable {
+
+        /* Next stripe of a finished job, larger than any stripe count */
+        private static final long CLOSED = Integer.MAX_VALUE;
+        private static final long STRIPE_MASK = 0xFFFFFFFFL;
+
+        final AtomicBoolean inUse = new AtomicBoolean();
+        /* Helpers submitted to the executor which haven't started yet */
+        final AtomicInteger queuedHelpers = new AtomicInteger();
+        /* Generation in the high bits, next stripe to claim in the low bits */
+        private final AtomicLong state = new AtomicLong(CLOSED);
+
+        /* Written before the generation is published, stable until all stripes are done */
+        private StripeTask task;
+        private int rows;
+        private int stripeRows;
+        private int stripes;
+
+        // Guarded by this
+        private int pendingStripes;
+        private RuntimeException failure;
+
+        synchronized void start(StripeTask task, int rows, int stripeRows, int stripes) {
+            this.task = task;
+            this.rows = rows;
+            this.stripeRows = stripeRows;
+            this.stripes = stripes;
+            this.pendingStripes = stripes;
+            this.failure = null;
+
+            state.set(((state.get() >>> 32) + 1) << 32);
+        }
+
+        /**
+         * Close the job, late helpers find nothing left, and free the slot.
+         */
+        void finish() {
+            state.set((state.get() & ~STRIPE_MASK) | CLOSED);
+            synchronized (this) {
+                task = null;
+                failure = null;
+            }
+            inUse.set(false);
+        }
+
+        @Override
+        public void run() {
+            queuedHelpers.decrementAndGet();
+            work();
+        }
+
+        void work() {
+            while (true) {
+                final long current = state.get();
+                final int stripe = (int) (current & STRIPE_MASK);
+                if (stripe >= stripes) return;
+                if (!state.compareAndSet(current, current + 1)) continue;
+
+                RuntimeException stripeFailure = null;
+                try {
+                    final int from = stripe * stripeRows;
+                    task.run(from, Math.min(rows, from + stripeRows));
+                } catch (RuntimeException e) {
+                    stripeFailure = e;
+                }
+
+                synchronized (this) {
+                    if (stripeFailure != null && failure == null) failure = stripeFailure;
+                    if (--pendingStripes == 0) notifyAll();
+                }
+            }
+        }
+
+        /**
+         * Wait for stripes claimed by helpers, then rethrow the first failure.
+         */
+        synchronized void await() {
+            boolean interrupted = false;
+            while (pendingStripes > 0) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+
+            if (interrupted) Thread.currentThread().interrupt();
+            if (failure != null) throw failure;
+        }
+    }
+}
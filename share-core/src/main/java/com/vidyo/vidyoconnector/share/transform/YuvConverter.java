@@ -0,0 +1,128 @@
+package com.vidyo.vidyoconnector.share.transform;
+
+import com.vidyo.vidyoconnector.share.model.OutputFormat;
+
+/**
+ * RGBA to YUV 4:2:0 (I420 or NV12) converter. Chroma is taken from the average of every 2x2 pixel block.
+ * <p>
+ * Pairs of rows are independent, so {@link #convertRows(byte[], int, int, byte[], int, int)} can be called
+ * for disjoint ranges from several threads.
+ */
+public class YuvConverter implements PixelConverter {
+
+    private static final int PIXEL = FrameCopier.RGBA_PIXEL_STRIDE;
+
+    private final OutputFormat outputFormat;
+    private final ColorMatrix colorMatrix;
+
+    private final StripeExecutor stripeExecutor;
+    private final StripeExecutor.StripeTask convertTask = new StripeExecutor.StripeTask() {
+        @Override
+        public void run(int fromRow, int toRow) {
+            convertRows(taskRgba, taskWidth, taskHeight, taskOutput, fromRow, toRow);
+        }
+    };
+    private byte[] taskRgba;
+    private byte[] taskOutput;
+    private int taskWidth;
+    private int taskHeight;
+
+    public YuvConverter(OutputFormat outputFormat, ColorMatrix colorMatrix) {
+        this(outputFormat, colorMatrix, null);
+    }
+
+    /**
+     * @param stripeExecutor {@link StripeExecutor} to spread rows over, null to convert on the calling thread.
+     */
+    public YuvConverter(OutputFormat outputFormat, ColorMatrix colorMatrix, StripeExecutor stripeExecutor) {
+        if (outputFormat != OutputFormat.I420 && outputFormat != OutputFormat.NV12) {
+            throw new IllegalArgumentException("Not a YUV format: " + outputFormat);
+        }
+
+        this.outputFormat = outputFormat;
+        this.colorMatrix = colorMatrix;
+        this.stripeExecutor = stripeExecutor;
+    }
+
+    @Override
+    public OutputFormat getOutputFormat() {
+        return outputFormat;
+    }
+
+    public ColorMatrix getColorMatrix() {
+        return colorMatrix;
+    }
+
+    @Override
+    public synchronized void convert(byte[] rgba, int width, int height, byte[] output) {
+        if (stripeExecutor == null) {
+            convertRows(rgba, width, height, output, 0, height);
+            return;
+        }
+
+        taskRgba = rgba;
+        taskOutput = output;
+        taskWidth = width;
+        taskHeight = height;
+        try {
+            stripeExecutor.execute(height, 2, convertTask);
+        } finally {
+            taskRgba = null;
+            taskOutput = null;
+        }
+    }
+
+    /**
+     * Convert source rows in range [fromRow, toRow). Range bounds have to be even, except the end of the frame.
+     */
+    public void convertRows(byte[] rgba, int width, int height, byte[] output, int fromRow, int toRow) {
+        final int chromaWidth = (width + 1) / 2;
+        final int chromaHeight = (height + 1) / 2;
+        final int lumaSize = width * height;
+        final int chromaSize = chromaWidth * chromaHeight;
+        final boolean semiPlanar = outputFormat == OutputFormat.NV12;
+        final ColorMatrix m = colorMatrix;
+
+        for (int row = fromRow; row < toRow; row += 2) {
+            final int nextRow = Math.min(row + 1, height - 1);
+            final int top = row * width * PIXEL;
+            final int bottom = nextRow * width * PIXEL;
+            final int chromaRow = row / 2;
+
+            int uOut = semiPlanar ? lumaSize + chromaRow * chromaWidth * 2 : lumaSize + chromaRow * chromaWidth;
+            int vOut = semiPlanar ? uOut + 1 : uOut + chromaSize;
+            final int chromaStep = semiPlanar ? 2 : 1;
+
+            for (int column = 0; column < width; column += 2) {
+                final int nextColumn = Math.min(column + 1, width - 1);
+
+                final int p00 = top + column * PIXEL;
+                final int p01 = top + nextColumn * PIXEL;
+                final int p10 = bottom + column * PIXEL;
+                final int p11 = bottom + nextColumn * PIXEL;
+
+                final int r00 = rgba[p00] & 0xFF, g00 = rgba[p00 + 1] & 0xFF, b00 = rgba[p00 + 2] & 0xFF;
+                final int r01 = rgba[p01] & 0xFF, g01 = rgba[p01 + 1] & 0xFF, b01 = rgba[p01 + 2] & 0xFF;
+                final int r10 = rgba[p10] & 0xFF, g10 = rgba[p10 + 1] & 0xFF, b10 = rgba[p10 + 2] & 0xFF;
+                final int r11 = rgba[p11] & 0xFF, g11 = rgba[p11 + 1] & 0xFF, b11 = rgba[p11 + 2] & 0xFF;
+
+                output[row * width + column] = (byte) m.y(r00, g00, b00);
+                if (nextColumn != column) output[row * width + nextColumn] = (byte) m.y(r01, g01, b01);
+
+                if (nextRow != row) {
+                    output[nextRow * width + column] = (byte) m.y(r10, g10, b10);
+                    if (nextColumn != column) output[nextRow * width + nextColumn] = (byte) m.y(r11, g11, b11);
+                }
+
+                final int r = (r00 + r01 + r10 + r11 + 2) >> 2;
+                final int g = (g00 + g01 + g10 + g11 + 2) >> 2;
+                final int b = (b00 + b01 + b10 + b11 + 2) >> 2;
+
+                output[uOut] = (byte) m.u(r, g, b);
+                output[vOut] = (byte) m.v(r, g, b);
+                uOut += chromaStep;
+                vOut += chromaStep;
+            }
+        }
+    }
+}
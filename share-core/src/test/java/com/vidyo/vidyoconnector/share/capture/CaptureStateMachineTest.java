@@ -0,0 +1,291 @@
+package com.vidyo.vidyoconnector.share.capture;
+
+import com.vidyo.vidyoconnector.share.capture.CaptureStateMachine.StartResult;
+
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CaptureStateMachineTest {
+
+    /**
+     * Session doing what ShareSession does around the machine, with a projection per start and
+     * capture resources counted instead of allocated.
+     */
+    private static class FakeSession {
+
+        final CaptureStateMachine machine = new CaptureStateMachine(this::onTransition);
+        final Executor lane;
+
+        final AtomicInteger projectionsGranted = new AtomicInteger();
+        final AtomicInteger projectionsStopped = new AtomicInteger();
+        final AtomicInteger runningCaptures = new AtomicInteger();
+        final AtomicInteger maxRunningCaptures = new AtomicInteger();
+        final AtomicInteger illegalTransitions = new AtomicInteger();
+
+        FakeSession(Executor lane) {
+            this.lane = lane;
+        }
+
+        synchronized boolean start() {
+            projectionsGranted.incrementAndGet();
+            final StartResult result = machine.requestStart(() -> lane.execute(this::startCapture), projectionsStopped::incrementAndGet);
+            if (result == StartResult.REJECTED) projectionsStopped.incrementAndGet();
+            return result != StartResult.REJECTED;
+        }
+
+        synchronized void stop() {
+            if (machine.requestRelease()) lane.execute(this::finishRelease);
+        }
+
+        void rotate() {
+            lane.execute(() -> {
+                if (machine.transition(CaptureState.CAPTURING, CaptureState.RECONFIGURING)) {
+                    machine.transition(CaptureState.RECONFIGURING, CaptureState.CAPTURING);
+                }
+            });
+        }
+
+        private void startCapture() {
+            if (machine.getState() != CaptureState.STARTING) return;
+
+            maxRunningCaptures.accumulateAndGet(runningCaptures.incrementAndGet(), Math::max);
+            machine.transition(CaptureState.STARTING, CaptureState.CAPTURING);
+        }
+
+        private void finishRelease() {
+            /* Start may have been released before it ran */
+            if (runningCaptures.get() > 0) runningCaptures.decrementAndGet();
+            projectionsStopped.incrementAndGet();
+            machine.onReleased();
+        }
+
+        private void onTransition(CaptureState from, CaptureState to) {
+            if (!isLegal(from, to)) illegalTransitions.incrementAndGet();
+        }
+
+        private static boolean isLegal(CaptureState from, CaptureState to) {
+            switch (to) {
+                case STARTING:
+                    return from == CaptureState.IDLE || from == CaptureState.RELEASED;
+                case CAPTURING:
+                    return from == CaptureState.STARTING || from == CaptureState.RECONFIGURING;
+                case RECONFIGURING:
+                    return from == CaptureState.CAPTURING;
+                case RELEASING:
+                    return from == CaptureState.STARTING || from == CaptureState.CAPTURING || from == CaptureState.RECONFIGURING;
+                case RELEASED:
+                    return from == CaptureState.RELEASING;
+                default:
+                    return false;
+            }
+        }
+
+        void assertStopped() {
+            assertTrue(machine.getState() == CaptureState.RELEASED || machine.getState() == CaptureState.IDLE);
+            assertEquals(0, runningCaptures.get());
+            /* Every projection is stopped exactly once: rejected, cancelled or released */
+            assertEquals(projectionsGranted.get(), projectionsStopped.get());
+            assertEquals(0, illegalTransitions.get());
+            assertTrue(maxRunningCaptures.get() <= 1);
+        }
+    }
+
+    /* Capture lane run step by step by the test */
+    private static class ManualLane implements Executor {
+
+        final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+
+        @Override
+        public void execute(Runnable task) {
+            tasks.add(task);
+        }
+
+        boolean runOne() {
+            final Runnable task = tasks.poll();
+            if (task == null) return false;
+
+            task.run();
+            return true;
+        }
+
+        void runAll() {
+            while (runOne()) ;
+        }
+    }
+
+    private final ManualLane lane = new ManualLane();
+    private final FakeSession session = new FakeSession(lane);
+
+    @Test
+    public void startAndStop() {
+        assertTrue(session.start());
+        assertEquals(CaptureState.STARTING, session.machine.getState());
+        lane.runAll();
+        assertEquals(CaptureState.CAPTURING, session.machine.getState());
+
+        session.stop();
+        assertEquals(CaptureState.RELEASING, session.machine.getState());
+        lane.runAll();
+
+        session.assertStopped();
+    }
+
+    @Test
+    public void secondStartIsRejected() {
+        assertTrue(session.start());
+        assertFalse(session.start());
+        lane.runAll();
+        assertFalse(session.start());
+
+        session.stop();
+        lane.runAll();
+        session.assertStopped();
+    }
+
+    @Test
+    public void startWhileReleasingIsDeferred() {
+        session.start();
+        lane.runAll();
+        session.stop();
+
+        assertEquals(StartResult.DEFERRED, session.machine.requestStart(() -> lane.execute(session::startCapture), () -> {
+        }));
+        assertEquals(CaptureState.RELEASING, session.machine.getState());
+
+        lane.runAll();
+        assertEquals(CaptureState.CAPTURING, session.machine.getState());
+        assertEquals(1, session.runningCaptures.get());
+    }
+
+    @Test
+    public void onlyOneStartIsDeferred() {
+        session.start();
+        lane.runAll();
+        session.stop();
+
+        assertTrue(session.start());
+        assertFalse(session.start());
+
+        lane.runAll();
+        assertEquals(CaptureState.CAPTURING, session.machine.getState());
+
+        session.stop();
+        lane.runAll();
+        session.assertStopped();
+    }
+
+    @Test
+    public void stopCancelsDeferredStart() {
+        session.start();
+        lane.runAll();
+        session.stop();
+        session.start();
+
+        session.stop();
+        lane.runAll();
+
+        assertEquals(CaptureState.RELEASED, session.machine.getState());
+        session.assertStopped();
+    }
+
+    @Test
+    public void stopBeforeStartRunsSkipsCapture() {
+        session.start();
+        session.stop();
+        lane.runAll();
+
+        assertEquals(0, session.maxRunningCaptures.get());
+        session.assertStopped();
+    }
+
+    @Test
+    public void rotateIsIgnoredUnlessCapturing() {
+        session.start();
+        session.rotate();
+        lane.runAll();
+        assertEquals(CaptureState.CAPTURING, session.machine.getState());
+
+        session.stop();
+        session.rotate();
+        lane.runAll();
+        session.assertStopped();
+    }
+
+    @Test
+    public void randomStartStopRotateStorm() {
+        final Random random = new Random(42);
+
+        for (int i = 0; i < 100_000; i++) {
+            final int operation = random.nextInt(10);
+            if (operation < 2) {
+                session.start();
+            } else if (operation < 4) {
+                session.stop();
+            } else if (operation < 5) {
+                session.rotate();
+            } else {
+                lane.runOne();
+            }
+
+            assertTrue(session.runningCaptures.get() <= 1);
+        }
+
+        session.stop();
+        lane.runAll();
+        session.assertStopped();
+    }
+
+    @Test(timeout = 30_000)
+    public void concurrentStartStopRotateStorm() throws InterruptedException {
+        final ExecutorService captureThread = Executors.newSingleThreadExecutor();
+        final FakeSession concurrentSession = new FakeSession(captureThread);
+        final int threads = 4;
+        final CountDownLatch done = new CountDownLatch(threads);
+
+        for (int t = 0; t < threads; t++) {
+            final Random random = new Random(t);
+            new Thread(() -> {
+                for (int i = 0; i < 20_000; i++) {
+                    final int operation = random.nextInt(3);
+                    if (operation == 0) {
+                        concurrentSession.start();
+                    } else if (operation == 1) {
+                        concurrentSession.stop();
+                    } else {
+                        concurrentSession.rotate();
+                    }
+                }
+                done.countDown();
+            }).start();
+        }
+
+        done.await();
+        /* Release queued behind the storm may let a deferred start run, stop until nothing is left */
+        do {
+            concurrentSession.stop();
+            drain(captureThread);
+        } while (concurrentSession.machine.getState() != CaptureState.RELEASED
+                && concurrentSession.machine.getState() != CaptureState.IDLE);
+
+        captureThread.shutdown();
+        concurrentSession.assertStopped();
+    }
+
+    private static void drain(ExecutorService executor) throws InterruptedException {
+        final CountDownLatch drained = new CountDownLatch(1);
+        executor.execute(drained::countDown);
+        assertTrue(drained.await(10, TimeUnit.SECONDS));
+    }
+}
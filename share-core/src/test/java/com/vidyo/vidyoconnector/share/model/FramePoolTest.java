@@ -0,0 +1,143 @@
+package com.vidyo.vidyoconnector.share.model;
+
+import org.junit.Test;
+
+import java.lang.ref.WeakReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class FramePoolTest {
+
+    private static final int SIZE = 16;
+
+    @Test
+    public void releasedBufferIsReused() {
+        final FramePool pool = new FramePool();
+        final FrameHolder first = pool.lease(SIZE, 2, 2, 0);
+        final byte[] buffer = first.byteArray;
+        first.release();
+
+        final FrameHolder second = pool.lease(SIZE, 2, 2, 0);
+
+        assertSame(buffer, second.byteArray);
+        assertEquals(1, pool.getHits());
+    }
+
+    @Test
+    public void lentBufferIsNotReusedUntilRecycled() {
+        final FramePool pool = new FramePool();
+        pool.setLendingEnabled(true);
+        final FrameHolder frame = pool.lease(SIZE, 2, 2, 0);
+        pool.lend(frame);
+        frame.release();
+
+        assertNotSame(frame.byteArray, pool.lease(SIZE, 2, 2, 0).byteArray);
+        assertEquals(1, pool.getLentCount());
+
+        assertTrue(pool.recycle(frame.byteArray));
+
+        assertEquals(0, pool.getLentCount());
+        assertSame(frame.byteArray, pool.lease(SIZE, 2, 2, 0).byteArray);
+    }
+
+    @Test
+    public void recycleRejectsBuffersNotLent() {
+        final FramePool pool = new FramePool();
+        final FrameHolder leased = pool.lease(SIZE, 2, 2, 0);
+        final FrameHolder free = pool.lease(SIZE, 2, 2, 0);
+        free.release();
+
+        assertFalse(pool.recycle(new byte[SIZE]));
+        assertFalse(pool.recycle(leased.byteArray));
+        assertFalse(pool.recycle(free.byteArray));
+        assertFalse(pool.recycle((byte[]) null));
+
+        /* The leased buffer has not been handed out twice */
+        assertNotSame(leased.byteArray, pool.lease(SIZE, 2, 2, 0).byteArray);
+    }
+
+    @Test
+    public void recycleAcceptsLentBufferOnce() {
+        final FramePool pool = new FramePool();
+        pool.setLendingEnabled(true);
+        final FrameHolder frame = pool.lease(SIZE, 2, 2, 0);
+        pool.lend(frame);
+        frame.release();
+
+        assertTrue(pool.recycle(frame.byteArray));
+        assertFalse(pool.recycle(frame.byteArray));
+    }
+
+    @Test
+    public void oldestLendIsAbandonedAboveLimit() {
+        final FramePool pool = new FramePool();
+        pool.setLendingEnabled(true);
+        pool.setMaxLentFrames(2);
+
+        final FrameHolder[] frames = new FrameHolder[3];
+        for (int i = 0; i < frames.length; i++) {
+            frames[i] = pool.lease(SIZE, 2, 2, i);
+            pool.lend(frames[i]);
+            frames[i].release();
+        }
+
+        assertEquals(2, pool.getLentCount());
+        assertEquals(1, pool.getAbandonedLends());
+        /* Abandoned buffer may still be in use and never goes back to the pool */
+        assertFalse(pool.recycle(frames[0].byteArray));
+        assertTrue(pool.recycle(frames[1].byteArray));
+        assertTrue(pool.recycle(frames[2].byteArray));
+    }
+
+    @Test
+    public void lendingStartsWithFirstBufferHandedBack() {
+        final FramePool pool = new FramePool();
+        final FrameHolder copied = pool.lease(SIZE, 2, 2, 0);
+
+        /* Consumer not known to keep buffers, the frame goes back to the pool on release */
+        assertFalse(pool.lend(copied));
+        copied.release();
+        assertEquals(0, pool.getLentCount());
+        assertSame(copied.byteArray, pool.lease(SIZE, 2, 2, 0).byteArray);
+
+        pool.recycle(new byte[SIZE]);
+
+        assertTrue(pool.isLendingEnabled());
+        final FrameHolder kept = pool.lease(SIZE, 2, 2, 0);
+        assertTrue(pool.lend(kept));
+        kept.release();
+        assertEquals(1, pool.getLentCount());
+    }
+
+    @Test
+    public void abandonedLendIsNotCountedAsLeak() throws InterruptedException {
+        final FramePool pool = new FramePool();
+        pool.setLendingEnabled(true);
+        pool.setMaxLentFrames(1);
+
+        final WeakReference<FrameHolder> abandoned = lendAndRelease(pool);
+        lendAndRelease(pool);
+        assertEquals(1, pool.getAbandonedLends());
+
+        for (int i = 0; i < 50 && abandoned.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+
+        assertNull(abandoned.get());
+        assertEquals(0, pool.getLeaks());
+        assertEquals(1, pool.getLeasedCount());
+    }
+
+    private static WeakReference<FrameHolder> lendAndRelease(FramePool pool) {
+        final FrameHolder frame = pool.lease(SIZE, 2, 2, 0);
+        pool.lend(frame);
+        frame.release();
+        return new WeakReference<>(frame);
+    }
+}
@@ -0,0 +1,168 @@
+package com.vidyo.vidyoconnector.share.pipeline;
+
+import com.vidyo.vidyoconnector.share.transform.StripeExecutor;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PipelineSchedulerTest {
+
+    @Test(timeout = 30_000)
+    public void laneRunsTasksInOrder() throws InterruptedException {
+        final ThreadPoolExecutor pool = PipelineScheduler.createPool(2);
+        final PipelineScheduler scheduler = new PipelineScheduler(pool, 1);
+        final PipelineScheduler.Lane[] lanes = {
+                scheduler.newLane("a", PipelineScheduler.PRIORITY_DISPLAY),
+                scheduler.newLane("b", PipelineScheduler.PRIORITY_CONTROL)
+        };
+        final int[] next = new int[lanes.length];
+        final CountDownLatch done = new CountDownLatch(lanes.length);
+        final int tasks = 10_000;
+
+        for (int i = 0; i < tasks; i++) {
+            for (int l = 0; l < lanes.length; l++) {
+                final int lane = l;
+                final int expected = i;
+                lanes[l].execute(() -> {
+                    if (next[lane] != expected) fail("Lane " + lane + " ran " + expected + " before " + next[lane]);
+                    if (++next[lane] == tasks) done.countDown();
+                });
+            }
+        }
+
+        assertTrue(done.await(20, TimeUnit.SECONDS));
+        pool.shutdown();
+    }
+
+    @Test
+    public void shutdownLaneRejectsTasks() {
+        final PipelineScheduler scheduler = new PipelineScheduler(Runnable::run, 1);
+        final PipelineScheduler.Lane lane = scheduler.newLane("lane", PipelineScheduler.PRIORITY_CONTROL);
+        lane.shutdown();
+
+        try {
+            lane.execute(() -> {
+            });
+            fail();
+        } catch (RejectedExecutionException expected) {
+            assertTrue(lane.isShutdown());
+        }
+    }
+
+    @Test(timeout = 30_000)
+    public void stripeHelpersStayOnPipelineThreads() throws InterruptedException {
+        final ThreadPoolExecutor pool = PipelineScheduler.createPool(3);
+        final PipelineScheduler scheduler = new PipelineScheduler(pool, 3);
+        final PipelineScheduler.Lane lane = scheduler.newLane("lane", PipelineScheduler.PRIORITY_DISPLAY);
+        final Set<String> threads = Collections.synchronizedSet(new HashSet<>());
+        final CountDownLatch done = new CountDownLatch(1);
+
+        lane.execute(() -> {
+            for (int i = 0; i < 100; i++) {
+                scheduler.getStripeExecutor().execute(90, 1, (from, to) -> threads.add(Thread.currentThread().getName()));
+            }
+            done.countDown();
+        });
+
+        assertTrue(done.await(20, TimeUnit.SECONDS));
+        for (String thread : threads) assertTrue(thread, thread.startsWith("SharePipeline-"));
+        pool.shutdown();
+    }
+
+    @Test(timeout = 30_000)
+    public void lanesRunStripeJobsConcurrently() throws InterruptedException {
+        final ThreadPoolExecutor pool = PipelineScheduler.createPool(2);
+        final PipelineScheduler scheduler = new PipelineScheduler(pool, 2);
+        final StripeExecutor stripeExecutor = scheduler.getStripeExecutor();
+        final CountDownLatch lanesRunning = new CountDownLatch(2);
+        final CountDownLatch bothRunning = new CountDownLatch(2);
+        final CountDownLatch done = new CountDownLatch(2);
+
+        /* Each job waits for the other one to be running, a single job at a time would never finish.
+         * Both lanes hold a pool thread first, so a helper can't take the thread the other lane needs */
+        for (int i = 0; i < 2; i++) {
+            scheduler.newLane("lane" + i, PipelineScheduler.PRIORITY_DISPLAY).execute(() -> {
+                lanesRunning.countDown();
+                try {
+                    lanesRunning.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+
+                stripeExecutor.execute(2, 1, (from, to) -> {
+                    if (from != 0) return;
+
+                    bothRunning.countDown();
+                    try {
+                        bothRunning.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+                done.countDown();
+            });
+        }
+
+        assertTrue(done.await(20, TimeUnit.SECONDS));
+        pool.shutdown();
+    }
+
+    @Test(timeout = 30_000)
+    public void scheduledTaskRunsOnLaneAfterDelay() throws InterruptedException {
+        final ThreadPoolExecutor pool = PipelineScheduler.createPool(2);
+        final PipelineScheduler scheduler = new PipelineScheduler(pool, 1);
+        final PipelineScheduler.Lane lane = scheduler.newLane("lane", PipelineScheduler.PRIORITY_DISPLAY);
+        final List<String> threads = new CopyOnWriteArrayList<>();
+        final CountDownLatch done = new CountDownLatch(1);
+        final long delay = TimeUnit.MILLISECONDS.toNanos(50);
+
+        final long start = System.nanoTime();
+        scheduler.schedule(lane, () -> {
+            threads.add(Thread.currentThread().getName());
+            done.countDown();
+        }, delay);
+
+        assertTrue(done.await(20, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - start >= delay);
+        assertTrue(threads.get(0), threads.get(0).startsWith("SharePipeline-"));
+        scheduler.shutdown();
+        pool.shutdown();
+    }
+
+    @Test(timeout = 30_000)
+    public void replacedDefaultKeepsRunning() throws InterruptedException {
+        final ThreadPoolExecutor pool = PipelineScheduler.createPool(2);
+        final PipelineScheduler replaced = new PipelineScheduler(pool, 2);
+        PipelineScheduler.setDefault(replaced);
+        final PipelineScheduler.Lane lane = PipelineScheduler.getDefault().newLane("lane", PipelineScheduler.PRIORITY_DISPLAY);
+        PipelineScheduler.setDefault(new PipelineScheduler(Runnable::run, 1));
+
+        /* Lanes of a live session still run their tasks on the replaced pool */
+        final List<String> threads = new CopyOnWriteArrayList<>();
+        final CountDownLatch done = new CountDownLatch(1);
+        lane.execute(() -> {
+            replaced.getStripeExecutor().execute(8, 1, (from, to) -> threads.add(Thread.currentThread().getName()));
+            done.countDown();
+        });
+
+        assertTrue(done.await(20, TimeUnit.SECONDS));
+        assertEquals(2, threads.size());
+        for (String thread : threads) assertTrue(thread, thread.startsWith("SharePipeline-"));
+        replaced.shutdown();
+        pool.shutdown();
+        PipelineScheduler.setDefault(null);
+    }
+}
@@ -0,0 +1,133 @@
+package com.vidyo.vidyoconnector.share.provider;
+
+import com.vidyo.vidyoconnector.share.model.FrameHolder;
+import com.vidyo.vidyoconnector.share.model.FramePool;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Producers lease frames stamped with a unique timestamp and hand them over through {@link FrameExchange}
+ * and {@link LatestFrameMailbox} while consumers take them. A buffer reused while still referenced shows up
+ * as a wrong stamp, a frame released twice as an exception, a frame never released in pool accounting.
+ */
+public class FrameHandoffStressTest {
+
+    private static final int PRODUCERS = 3;
+    private static final int CONSUMERS = 3;
+    private static final int FRAMES_PER_PRODUCER = 20_000;
+    private static final int FRAME_SIZE = 64;
+
+    private final FramePool framePool = new FramePool(4, Long.MAX_VALUE);
+    private final FrameExchange exchange = new FrameExchange();
+    private final LatestFrameMailbox mailbox = new LatestFrameMailbox();
+
+    private final AtomicLong nextSequence = new AtomicLong();
+    private final AtomicBoolean producing = new AtomicBoolean(true);
+    private final AtomicInteger corruptFrames = new AtomicInteger();
+    private final AtomicInteger consumedFrames = new AtomicInteger();
+    private final List<Throwable> failures = new ArrayList<>();
+
+    @Test(timeout = 60_000)
+    public void framesAreNeitherLeakedNorReleasedTwice() throws InterruptedException {
+        final CountDownLatch producersDone = new CountDownLatch(PRODUCERS);
+        final List<Thread> threads = new ArrayList<>();
+
+        for (int i = 0; i < PRODUCERS; i++) {
+            threads.add(thread(() -> {
+                try {
+                    for (int frame = 0; frame < FRAMES_PER_PRODUCER; frame++) produce();
+                } finally {
+                    producersDone.countDown();
+                }
+            }));
+        }
+
+        for (int i = 0; i < CONSUMERS; i++) {
+            final boolean fromMailbox = i % 2 == 0;
+            threads.add(thread(() -> {
+                while (producing.get()) {
+                    if (fromMailbox) {
+                        consume(mailbox.poll());
+                    } else {
+                        consume(exchange.acquire());
+                    }
+                }
+            }));
+        }
+
+        for (Thread thread : threads) thread.start();
+        producersDone.await();
+        producing.set(false);
+        for (Thread thread : threads) thread.join();
+
+        exchange.clear();
+        mailbox.clear();
+
+        assertTrue(failures.toString(), failures.isEmpty());
+        assertEquals(0, corruptFrames.get());
+        assertTrue(consumedFrames.get() > 0);
+        assertEquals(0, framePool.getLeasedCount());
+        assertEquals(0, framePool.getLeaks());
+        /* Buffers went round instead of being allocated for every frame */
+        assertTrue(framePool.getHits() > 0);
+    }
+
+    private void produce() {
+        final long sequence = nextSequence.getAndIncrement();
+        final FrameHolder frame = framePool.lease(FRAME_SIZE, 4, 4, sequence);
+        stamp(frame);
+
+        /* One reference for each handoff */
+        frame.retain();
+        exchange.publish(frame);
+        mailbox.post(frame);
+    }
+
+    private void consume(FrameHolder frame) {
+        if (frame == null) {
+            Thread.yield();
+            return;
+        }
+
+        if (!hasStamp(frame)) corruptFrames.incrementAndGet();
+        consumedFrames.incrementAndGet();
+        frame.release();
+    }
+
+    private static void stamp(FrameHolder frame) {
+        final ByteBuffer buffer = ByteBuffer.wrap(frame.byteArray);
+        while (buffer.remaining() >= Long.BYTES) buffer.putLong(frame.timestamp);
+    }
+
+    private static boolean hasStamp(FrameHolder frame) {
+        final ByteBuffer buffer = ByteBuffer.wrap(frame.byteArray);
+        while (buffer.remaining() >= Long.BYTES) {
+            if (buffer.getLong() != frame.timestamp) return false;
+        }
+        return true;
+    }
+
+    private Thread thread(Runnable body) {
+        return new Thread(() -> {
+            try {
+                body.run();
+            } catch (Throwable t) {
+                synchronized (failures) {
+                    failures.add(t);
+                }
+                producing.set(false);
+            }
+        });
+    }
+}
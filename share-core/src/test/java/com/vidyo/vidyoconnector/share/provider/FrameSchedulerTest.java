@@ -0,0 +1,111 @@
+package com.vidyo.vidyoconnector.share.provider;
+
+import com.vidyo.vidyoconnector.share.provider.FrameScheduler.LatePolicy;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FrameSchedulerTest {
+
+    private static final long INTERVAL = 1_000;
+
+    /* Virtual time, moved only by the test */
+    private static class FakeClock implements FrameScheduler.Clock {
+
+        long now;
+
+        @Override
+        public long nanoTime() {
+            return now;
+        }
+    }
+
+    private final FakeClock clock = new FakeClock();
+
+    @Test
+    public void deadlinesStayOnGrid() {
+        final FrameScheduler scheduler = new FrameScheduler(INTERVAL, LatePolicy.SKIP);
+        scheduler.start(clock.nanoTime());
+
+        for (int tick = 1; tick <= 10; tick++) {
+            assertEquals(tick * INTERVAL, scheduler.getNextDeadline());
+            /* Late wake-up and callback time don't shift the next deadline */
+            clock.now = tick * INTERVAL + 300;
+            scheduler.advance(clock.nanoTime());
+        }
+
+        assertEquals(0, scheduler.getSkippedTicks());
+    }
+
+    @Test
+    public void timeToNextTick() {
+        final FrameScheduler scheduler = new FrameScheduler(INTERVAL, LatePolicy.SKIP);
+        scheduler.start(clock.nanoTime());
+
+        clock.now = 400;
+        assertEquals(600, scheduler.timeToNextTick(clock.nanoTime()));
+
+        clock.now = 1_200;
+        assertTrue(scheduler.timeToNextTick(clock.nanoTime()) < 0);
+    }
+
+    @Test
+    public void skipJumpsToNextFutureDeadline() {
+        final FrameScheduler scheduler = new FrameScheduler(INTERVAL, LatePolicy.SKIP);
+        scheduler.start(clock.nanoTime());
+
+        /* Tick 1 fired at 1000 and returned at 4500: ticks 2, 3 and 4 are missed */
+        clock.now = 4_500;
+        assertEquals(5 * INTERVAL, scheduler.advance(clock.nanoTime()));
+        assertEquals(3, scheduler.getSkippedTicks());
+    }
+
+    @Test
+    public void catchUpFiresMissedTicksWithinBudget() {
+        final FrameScheduler scheduler = new FrameScheduler(INTERVAL, LatePolicy.CATCH_UP, 3);
+        scheduler.start(clock.nanoTime());
+
+        clock.now = 3_500;
+        /* Ticks 2 and 3 are missed and both are fired right away */
+        assertEquals(2 * INTERVAL, scheduler.advance(clock.nanoTime()));
+        assertEquals(3 * INTERVAL, scheduler.advance(clock.nanoTime()));
+        assertEquals(4 * INTERVAL, scheduler.advance(clock.nanoTime()));
+        assertEquals(0, scheduler.getSkippedTicks());
+    }
+
+    @Test
+    public void catchUpFiresBudgetAndSkipsOnlyTheRest() {
+        final FrameScheduler scheduler = new FrameScheduler(INTERVAL, LatePolicy.CATCH_UP, 2);
+        scheduler.start(clock.nanoTime());
+
+        /* Ticks 2..6 are missed: the oldest 3 are skipped, 5 and 6 still fire */
+        clock.now = 6_500;
+        assertEquals(5 * INTERVAL, scheduler.advance(clock.nanoTime()));
+        assertEquals(3, scheduler.getSkippedTicks());
+
+        int fired = 0;
+        long deadline = scheduler.getNextDeadline();
+        while (scheduler.timeToNextTick(clock.nanoTime()) <= 0) {
+            deadline = scheduler.advance(clock.nanoTime());
+            fired++;
+        }
+
+        assertEquals(2, fired);
+        assertEquals(7 * INTERVAL, deadline);
+        assertEquals(3, scheduler.getSkippedTicks());
+    }
+
+    @Test
+    public void setIntervalKeepsLastDeadlineAsAnchor() {
+        final FrameScheduler scheduler = new FrameScheduler(INTERVAL, LatePolicy.SKIP);
+        scheduler.start(clock.nanoTime());
+
+        clock.now = 1_000;
+        scheduler.advance(clock.nanoTime());
+        scheduler.setInterval(500);
+
+        assertEquals(1_500, scheduler.getNextDeadline());
+    }
+}
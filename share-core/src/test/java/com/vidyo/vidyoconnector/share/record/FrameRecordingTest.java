@@ -0,0 +1,138 @@
+package com.vidyo.vidyoconnector.share.record;
+
+import com.vidyo.vidyoconnector.share.model.FrameHolder;
+import com.vidyo.vidyoconnector.share.model.FramePool;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class FrameRecordingTest {
+
+    private static final int WIDTH = 70;
+    private static final int HEIGHT = 50;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final FramePool framePool = new FramePool();
+
+    @Test
+    public void rawFramesRoundTrip() throws IOException {
+        final File file = record(false, 5, true);
+
+        try (FrameRecording recording = FrameRecording.open(file)) {
+            assertEquals(5, recording.getFrameCount());
+            assertFramesMatch(recording, 5);
+        }
+    }
+
+    @Test
+    public void tileFramesRoundTrip() throws IOException {
+        final File file = record(true, 20, true);
+
+        try (FrameRecording recording = FrameRecording.open(file)) {
+            assertEquals(20, recording.getFrameCount());
+            assertEquals(FrameRecordFormat.ENCODING_TILES, recording.getEncoding(1));
+            assertFramesMatch(recording, 20);
+            /* Out of order decode rebuilds the canvas from the keyframe */
+            assertFrameMatches(recording, 3);
+        }
+    }
+
+    @Test
+    public void unclosedRecordingEndsAtLastWrittenFrame() throws IOException {
+        /* Not closed: header has no frame count and the rest of the mapped window is zeros */
+        final File file = record(true, 7, false);
+        assertFalse(file.length() < 1024 * 1024);
+
+        try (FrameRecording recording = FrameRecording.open(file)) {
+            assertEquals(7, recording.getFrameCount());
+            assertFramesMatch(recording, 7);
+        }
+    }
+
+    @Test
+    public void scanStopsAtRecordWithWrongPayloadSize() throws IOException {
+        final File file = record(false, 3, true);
+        final long thirdFrame = FrameRecordFormat.HEADER_SIZE + 2L * (FrameRecordFormat.FRAME_HEADER_SIZE + WIDTH * HEIGHT * 4);
+
+        try (RandomAccessFile raw = new RandomAccessFile(file, "rw")) {
+            /* No frame count, as after a crash */
+            raw.seek(FrameRecordFormat.FRAME_COUNT_OFFSET);
+            raw.writeInt(0);
+            /* Height of the third frame no longer matches its payload */
+            raw.seek(thirdFrame + 4);
+            raw.write(new byte[]{1, 0, 0, 0});
+        }
+
+        try (FrameRecording recording = FrameRecording.open(file)) {
+            assertEquals(2, recording.getFrameCount());
+        }
+    }
+
+    @Test
+    public void headerFrameCountLimitsScan() throws IOException {
+        final File file = record(false, 4, true);
+
+        try (RandomAccessFile raw = new RandomAccessFile(file, "rw")) {
+            raw.seek(FrameRecordFormat.FRAME_COUNT_OFFSET);
+            raw.write(new byte[]{2, 0, 0, 0});
+        }
+
+        try (FrameRecording recording = FrameRecording.open(file)) {
+            assertEquals(2, recording.getFrameCount());
+        }
+    }
+
+    private File record(boolean tileCompression, int frames, boolean close) throws IOException {
+        final File file = folder.newFile();
+        final FrameRecorder recorder = new FrameRecorder(file, tileCompression);
+
+        for (int i = 0; i < frames; i++) {
+            final FrameHolder frame = frame(i);
+            recorder.record(frame);
+            frame.release();
+        }
+
+        if (close) recorder.close();
+        return file;
+    }
+
+    /* Small moving square over a fixed background, so most tiles stay the same */
+    private FrameHolder frame(int index) {
+        final FrameHolder frame = framePool.lease(WIDTH * HEIGHT * 4, WIDTH, HEIGHT, index * 1000L);
+        for (int i = 0; i < frame.byteArray.length; i++) frame.byteArray[i] = (byte) (i * 7);
+
+        final int left = index * 3 % (WIDTH - 8);
+        for (int y = 10; y < 18; y++) {
+            for (int x = left; x < left + 8; x++) {
+                for (int c = 0; c < 4; c++) frame.byteArray[(y * WIDTH + x) * 4 + c] = (byte) index;
+            }
+        }
+        return frame;
+    }
+
+    private void assertFramesMatch(FrameRecording recording, int frames) {
+        for (int i = 0; i < frames; i++) assertFrameMatches(recording, i);
+    }
+
+    private void assertFrameMatches(FrameRecording recording, int index) {
+        final FrameHolder expected = frame(index);
+        final FrameHolder decoded = recording.decode(index, framePool, 0);
+
+        assertEquals(index * 1000L, recording.getTimestamp(index));
+        assertArrayEquals("frame " + index, expected.byteArray, decoded.byteArray);
+
+        expected.release();
+        decoded.release();
+    }
+}
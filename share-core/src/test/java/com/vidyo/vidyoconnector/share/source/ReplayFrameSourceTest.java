@@ -0,0 +1,187 @@
+package com.vidyo.vidyoconnector.share.source;
+
+import com.vidyo.vidyoconnector.share.model.FrameHolder;
+import com.vidyo.vidyoconnector.share.model.FramePool;
+import com.vidyo.vidyoconnector.share.provider.FrameScheduler;
+import com.vidyo.vidyoconnector.share.record.FrameRecorder;
+import com.vidyo.vidyoconnector.share.record.FrameRecording;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ReplayFrameSourceTest {
+
+    private static final int WIDTH = 16;
+    private static final int HEIGHT = 8;
+    private static final int FRAMES = 5;
+    /* Recorded frame interval */
+    private static final long INTERVAL = TimeUnit.MILLISECONDS.toNanos(1);
+
+    /* Virtual time, moved only by the test */
+    private static class FakeClock implements FrameScheduler.Clock {
+
+        volatile long now;
+
+        @Override
+        public long nanoTime() {
+            return now;
+        }
+    }
+
+    private static class CollectingListener implements FrameSourceListener {
+
+        final BlockingQueue<FrameHolder> frames = new LinkedBlockingQueue<>();
+        final CountDownLatch stopped = new CountDownLatch(1);
+
+        @Override
+        public void onFrameCaptured(FrameHolder frameHolder) {
+            frames.add(frameHolder);
+        }
+
+        @Override
+        public void onSourceStopped() {
+            stopped.countDown();
+        }
+    }
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final FramePool framePool = new FramePool();
+    private final FakeClock clock = new FakeClock();
+    private final CollectingListener listener = new CollectingListener();
+    private FrameRecording recording;
+    private ReplayFrameSource source;
+
+    @After
+    public void tearDown() throws IOException {
+        if (source != null) source.requestRelease();
+        if (recording != null) recording.close();
+    }
+
+    @Test(timeout = 30_000)
+    public void framesAreReplayedInOrderAndStopAtEnd() throws Exception {
+        source = replay(ReplayFrameSource.AS_FAST_AS_POSSIBLE, false);
+        assertTrue(source.start());
+
+        for (int i = 0; i < FRAMES; i++) assertFrame(i, i, listener.frames.poll(5, TimeUnit.SECONDS));
+
+        /* End of the recording stops the source on its own */
+        assertTrue(listener.stopped.await(5, TimeUnit.SECONDS));
+        assertNull(listener.frames.poll(20, TimeUnit.MILLISECONDS));
+        assertEquals(FRAMES, source.getReplayedFrames().getTotal());
+        assertEquals(0, source.getDroppedFrames());
+    }
+
+    @Test(timeout = 30_000)
+    public void loopContinuesSequence() throws Exception {
+        source = replay(ReplayFrameSource.AS_FAST_AS_POSSIBLE, true);
+        source.start();
+
+        /* Content starts over, sequence numbers keep growing */
+        for (int i = 0; i < 2 * FRAMES + 1; i++) assertFrame(i % FRAMES, i, listener.frames.poll(5, TimeUnit.SECONDS));
+
+        source.requestRelease();
+        assertTrue(listener.stopped.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test(timeout = 30_000)
+    public void framesFollowRecordedTiming() throws Exception {
+        source = replay(1, false);
+        source.start();
+
+        /* First frame is due right away, the others at their recorded offsets */
+        assertFrame(0, 0, listener.frames.poll(5, TimeUnit.SECONDS));
+        for (int i = 1; i < FRAMES; i++) {
+            clock.now = i * INTERVAL - 1;
+            assertNull(listener.frames.poll(5, TimeUnit.MILLISECONDS));
+
+            clock.now = i * INTERVAL;
+            final FrameHolder frame = listener.frames.poll(5, TimeUnit.SECONDS);
+            assertEquals(i * INTERVAL, frame.timestamp);
+            assertFrame(i, i, frame);
+        }
+
+        assertTrue(listener.stopped.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test(timeout = 30_000)
+    public void speedShortensIntervals() throws Exception {
+        source = replay(2, false);
+        source.start();
+        assertFrame(0, 0, listener.frames.poll(5, TimeUnit.SECONDS));
+
+        clock.now = INTERVAL / 2 - 1;
+        assertNull(listener.frames.poll(5, TimeUnit.MILLISECONDS));
+
+        clock.now = INTERVAL / 2;
+        assertFrame(1, 1, listener.frames.poll(5, TimeUnit.SECONDS));
+    }
+
+    @Test(timeout = 30_000)
+    public void lazyModeKeepsNewestFrame() throws Exception {
+        source = replay(ReplayFrameSource.AS_FAST_AS_POSSIBLE, false);
+        source.setLazyConversion(true);
+        source.start();
+
+        assertTrue(listener.stopped.await(5, TimeUnit.SECONDS));
+        assertTrue(listener.frames.isEmpty());
+        /* Released at the end, the pending frame is gone */
+        assertNull(source.convertPendingFrame());
+        assertEquals(FRAMES - 1, source.getDroppedFrames());
+    }
+
+    @Test
+    public void emptyRecordingDoesNotStart() throws Exception {
+        source = new ReplayFrameSource(framePool, open(0), 1, false, clock);
+        assertFalse(source.start());
+    }
+
+    private ReplayFrameSource replay(double speed, boolean loop) throws IOException {
+        final ReplayFrameSource replay = new ReplayFrameSource(framePool, open(FRAMES), speed, loop, clock);
+        replay.listen(listener);
+        return replay;
+    }
+
+    private FrameRecording open(int frames) throws IOException {
+        final File file = folder.newFile();
+        try (FrameRecorder recorder = new FrameRecorder(file, true)) {
+            for (int i = 0; i < frames; i++) {
+                final FrameHolder frame = framePool.lease(WIDTH * HEIGHT * 4, WIDTH, HEIGHT, 1_000 + i * INTERVAL);
+                /* Left half changes every frame, so tile frames follow the first one */
+                for (int p = 0; p < frame.byteArray.length; p++) frame.byteArray[p] = (byte) (p % (WIDTH * 4) < WIDTH * 2 ? i : 0x7F);
+                recorder.record(frame);
+                frame.release();
+            }
+        }
+
+        recording = FrameRecording.open(file);
+        return recording;
+    }
+
+    private static void assertFrame(int index, long sequence, FrameHolder frame) {
+        assertNotNull("frame " + sequence, frame);
+        assertEquals(sequence, frame.sequence);
+        assertEquals(WIDTH, frame.width);
+        assertEquals(HEIGHT, frame.height);
+        for (int p = 0; p < WIDTH * HEIGHT * 4; p++) {
+            assertEquals("frame " + sequence + " byte " + p, (byte) (p % (WIDTH * 4) < WIDTH * 2 ? index : 0x7F), frame.byteArray[p]);
+        }
+        frame.release();
+    }
+}
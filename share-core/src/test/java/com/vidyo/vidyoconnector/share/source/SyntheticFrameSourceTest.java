@@ -0,0 +1,221 @@
+package com.vidyo.vidyoconnector.share.source;
+
+import com.vidyo.vidyoconnector.share.model.FrameHolder;
+import com.vidyo.vidyoconnector.share.model.FramePool;
+import com.vidyo.vidyoconnector.share.provider.FrameScheduler;
+import com.vidyo.vidyoconnector.share.transform.FrameCopier;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SyntheticFrameSourceTest {
+
+    private static final int WIDTH = 40;
+    private static final int HEIGHT = 30;
+    private static final int ROW_PADDING = 12;
+    private static final int FPS = 1000;
+    private static final long INTERVAL = TimeUnit.SECONDS.toNanos(1) / FPS;
+    private static final int SCROLL_ROWS_PER_FRAME = 4;
+
+    /* Virtual time, moved only by the test */
+    private static class FakeClock implements FrameScheduler.Clock {
+
+        volatile long now;
+
+        @Override
+        public long nanoTime() {
+            return now;
+        }
+    }
+
+    private static class CollectingListener implements FrameSourceListener {
+
+        final BlockingQueue<FrameHolder> frames = new LinkedBlockingQueue<>();
+        volatile boolean stopped;
+
+        @Override
+        public void onFrameCaptured(FrameHolder frameHolder) {
+            frames.add(frameHolder);
+        }
+
+        @Override
+        public void onSourceStopped() {
+            stopped = true;
+        }
+    }
+
+    private final FramePool framePool = new FramePool();
+    private final FakeClock clock = new FakeClock();
+    private SyntheticFrameSource source;
+
+    @After
+    public void tearDown() {
+        if (source != null) source.requestRelease();
+    }
+
+    @Test
+    public void staticPatternNeverChanges() {
+        source = create(SyntheticFrameSource.Pattern.STATIC);
+
+        final byte[] first = pixels(source.produceFrame(0));
+        assertArrayEquals(first, pixels(source.produceFrame(7)));
+        assertTextColors(first);
+    }
+
+    @Test
+    public void scrollingTextMovesUp() {
+        source = create(SyntheticFrameSource.Pattern.SCROLLING_TEXT);
+
+        final byte[] first = pixels(source.produceFrame(0));
+        final byte[] second = pixels(source.produceFrame(1));
+        assertTextColors(first);
+        assertFalse(Arrays.equals(first, second));
+
+        /* Row y of the next frame is row y + scroll of the previous one */
+        final int rowBytes = WIDTH * FrameCopier.RGBA_PIXEL_STRIDE;
+        for (int y = 0; y < HEIGHT - SCROLL_ROWS_PER_FRAME; y++) {
+            assertArrayEquals("row " + y, Arrays.copyOfRange(first, (y + SCROLL_ROWS_PER_FRAME) * rowBytes, (y + SCROLL_ROWS_PER_FRAME + 1) * rowBytes),
+                    Arrays.copyOfRange(second, y * rowBytes, (y + 1) * rowBytes));
+        }
+    }
+
+    @Test
+    public void noiseChangesEveryFrame() {
+        source = create(SyntheticFrameSource.Pattern.NOISE);
+
+        final byte[] first = pixels(source.produceFrame(0));
+        final byte[] second = pixels(source.produceFrame(1));
+        assertFalse(Arrays.equals(first, second));
+
+        /* Opaque pixels only */
+        for (int i = 3; i < first.length; i += FrameCopier.RGBA_PIXEL_STRIDE) assertEquals((byte) 0xFF, first[i]);
+    }
+
+    @Test(timeout = 30_000)
+    public void framesFollowClock() throws InterruptedException {
+        source = create(SyntheticFrameSource.Pattern.STATIC);
+        final CollectingListener listener = new CollectingListener();
+        source.listen(listener);
+        assertTrue(source.start());
+        assertFalse(source.start());
+
+        for (int tick = 1; tick <= 20; tick++) {
+            /* Nothing is due before the deadline */
+            clock.now = tick * INTERVAL - 1;
+            assertNull(listener.frames.poll(5, TimeUnit.MILLISECONDS));
+
+            clock.now = tick * INTERVAL;
+            final FrameHolder frame = listener.frames.poll(5, TimeUnit.SECONDS);
+            assertNotNull("tick " + tick, frame);
+            assertEquals(tick - 1, frame.sequence);
+            assertEquals(tick * INTERVAL, frame.timestamp);
+            frame.release();
+            awaitNextDeadline((tick + 1) * INTERVAL);
+        }
+
+        assertEquals(20, source.getGeneratedFrames().getTotal());
+        assertEquals(0, source.getDroppedFrames());
+
+        source.requestRelease();
+        assertTrue(listener.stopped);
+    }
+
+    @Test(timeout = 30_000)
+    public void missedTicksAreReportedAsDropped() throws InterruptedException {
+        source = create(SyntheticFrameSource.Pattern.STATIC);
+        final CollectingListener listener = new CollectingListener();
+        source.listen(listener);
+        source.start();
+
+        clock.now = INTERVAL;
+        listener.frames.poll(5, TimeUnit.SECONDS).release();
+        awaitNextDeadline(2 * INTERVAL);
+
+        /* Tick 2 fires late at 5, ticks 3, 4 and 5 are skipped */
+        clock.now = 5 * INTERVAL;
+        final FrameHolder late = listener.frames.poll(5, TimeUnit.SECONDS);
+        assertEquals(1, late.sequence);
+        late.release();
+        awaitNextDeadline(6 * INTERVAL);
+
+        assertEquals(3, source.getDroppedFrames());
+    }
+
+    @Test(timeout = 30_000)
+    public void lazyModeKeepsNewestFrame() throws InterruptedException {
+        source = create(SyntheticFrameSource.Pattern.SCROLLING_TEXT);
+        final CollectingListener listener = new CollectingListener();
+        source.listen(listener);
+        source.setLazyConversion(true);
+        source.start();
+
+        for (int tick = 1; tick <= 3; tick++) {
+            clock.now = tick * INTERVAL;
+            awaitNextDeadline((tick + 1) * INTERVAL);
+        }
+
+        assertTrue(listener.frames.isEmpty());
+        /* Frames 0 and 1 were replaced before being pulled */
+        assertEquals(2, source.getDroppedFrames());
+
+        final FrameHolder frame = source.convertPendingFrame();
+        assertEquals(2, frame.sequence);
+        assertArrayEquals(pixels(create(SyntheticFrameSource.Pattern.SCROLLING_TEXT).produceFrame(2)), pixels(frame));
+        assertNull(source.convertPendingFrame());
+    }
+
+    /**
+     * Wait for the generator to be done with the tick, the clock must not move before it has advanced.
+     */
+    private void awaitNextDeadline(long deadline) throws InterruptedException {
+        while (source.getFrameScheduler().getNextDeadline() != deadline) Thread.sleep(1);
+    }
+
+    private SyntheticFrameSource create(SyntheticFrameSource.Pattern pattern) {
+        return new SyntheticFrameSource(framePool, pattern, WIDTH, HEIGHT, ROW_PADDING, FPS, clock);
+    }
+
+    /**
+     * @return packed pixels of the frame, which is released.
+     */
+    private static byte[] pixels(FrameHolder frame) {
+        final byte[] pixels = Arrays.copyOf(frame.byteArray, FrameCopier.packedSize(WIDTH, HEIGHT));
+        frame.release();
+        return pixels;
+    }
+
+    /**
+     * Text patterns are made of white background and dark glyphs only, both present.
+     */
+    private static void assertTextColors(byte[] pixels) {
+        int ink = 0;
+        int white = 0;
+
+        for (int i = 0; i < pixels.length; i += FrameCopier.RGBA_PIXEL_STRIDE) {
+            assertEquals((byte) 0xFF, pixels[i + 3]);
+            if (pixels[i] == (byte) 0xFF && pixels[i + 1] == (byte) 0xFF && pixels[i + 2] == (byte) 0xFF) {
+                white++;
+            } else {
+                assertEquals(0x20, pixels[i]);
+                assertEquals(0x20, pixels[i + 1]);
+                assertEquals(0x20, pixels[i + 2]);
+                ink++;
+            }
+        }
+
+        assertTrue(ink > 0);
+        assertTrue(white > 0);
+    }
+}
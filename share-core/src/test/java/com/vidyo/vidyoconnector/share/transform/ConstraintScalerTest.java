@@ -0,0 +1,60 @@
+package com.vidyo.vidyoconnector.share.transform;
+
+import com.vidyo.vidyoconnector.share.model.FrameHolder;
+import com.vidyo.vidyoconnector.share.model.FramePool;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class ConstraintScalerTest {
+
+    /* Short side above the 1080 limit */
+    private static final int WIDTH = 2160;
+    private static final int HEIGHT = 1200;
+
+    private final FramePool framePool = new FramePool();
+
+    @Test
+    public void frameWithinConstraintsIsReturnedAsIs() {
+        final ConstraintScaler scaler = new ConstraintScaler(framePool, null);
+        final FrameHolder frame = framePool.lease(FrameCopier.packedSize(640, 480), 640, 480, 1, 2);
+
+        assertSame(frame, scaler.apply(frame));
+        assertEquals(1, framePool.getLeasedCount());
+    }
+
+    @Test
+    public void largeFrameIsScaledAndReleased() {
+        final ConstraintScaler scaler = new ConstraintScaler(framePool, null);
+        final FrameHolder frame = framePool.lease(FrameCopier.packedSize(WIDTH, HEIGHT), WIDTH, HEIGHT, 1, 2);
+
+        final FrameHolder scaled = scaler.apply(frame);
+
+        assertEquals(1080, scaled.height);
+        assertEquals(1, scaled.timestamp);
+        assertEquals(2, scaled.sequence);
+        /* Only the scaled copy is still leased */
+        assertEquals(1, framePool.getLeasedCount());
+        scaled.release();
+        assertEquals(0, framePool.getLeasedCount());
+    }
+
+    @Test
+    public void failedScaleReleasesBothFrames() {
+        final ConstraintScaler scaler = new ConstraintScaler(framePool, null);
+        /* Buffer too small for the frame size, the scaler runs out of bounds */
+        final FrameHolder frame = framePool.lease(16, WIDTH, HEIGHT, 0);
+
+        try {
+            scaler.apply(frame);
+            fail();
+        } catch (ArrayIndexOutOfBoundsException expected) {
+            /* Failure is passed on */
+        }
+
+        assertEquals(0, framePool.getLeasedCount());
+    }
+}
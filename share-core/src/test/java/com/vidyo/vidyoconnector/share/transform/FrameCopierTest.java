@@ -0,0 +1,125 @@
+package com.vidyo.vidyoconnector.share.transform;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class FrameCopierTest {
+
+    private final Random random = new Random(1);
+
+    @Test
+    public void unpaddedMatchesLegacyCopy() {
+        assertMatchesLegacy(64, 48, 64 * 4);
+    }
+
+    @Test
+    public void paddedMatchesLegacyCopy() {
+        /* Row strides aligned the way image readers pad them */
+        assertMatchesLegacy(1080, 7, 1088 * 4);
+        assertMatchesLegacy(33, 5, 64 * 4);
+        assertMatchesLegacy(1, 3, 16);
+    }
+
+    @Test
+    public void sourcePositionIsKept() {
+        final ByteBuffer source = plane(16 * 4, 4);
+        source.position(5);
+
+        FrameCopier.copy(source, 16 * 4, 4, 16, 4, new byte[FrameCopier.packedSize(16, 4)]);
+
+        assertEquals(5, source.position());
+    }
+
+    @Test
+    public void cropMatchesRegionOfLegacyCopy() {
+        final int width = 40;
+        final int height = 30;
+        final int rowStride = 48 * 4;
+        final ByteBuffer source = plane(rowStride, height);
+        final byte[] full = legacyCopy(source, rowStride, 4, width, height);
+
+        final int left = 7;
+        final int top = 11;
+        final int cropWidth = 20;
+        final int cropHeight = 9;
+        final byte[] cropped = new byte[FrameCopier.packedSize(cropWidth, cropHeight)];
+        FrameCopier.copy(source, rowStride, 4, left, top, cropWidth, cropHeight, cropped);
+
+        for (int row = 0; row < cropHeight; row++) {
+            for (int i = 0; i < cropWidth * 4; i++) {
+                assertEquals(full[((top + row) * width + left) * 4 + i], cropped[row * cropWidth * 4 + i]);
+            }
+        }
+    }
+
+    @Test
+    public void widePixelStrideIsPacked() {
+        /* Every pixel followed by 4 bytes of something else */
+        final int width = 9;
+        final int height = 4;
+        final int rowStride = width * 8 + 8;
+        final ByteBuffer source = plane(rowStride, height);
+
+        final byte[] copied = new byte[FrameCopier.packedSize(width, height)];
+        FrameCopier.copy(source, rowStride, 8, width, height, copied);
+
+        for (int row = 0; row < height; row++) {
+            for (int column = 0; column < width; column++) {
+                for (int c = 0; c < 4; c++) {
+                    assertEquals(source.get(row * rowStride + column * 8 + c), copied[(row * width + column) * 4 + c]);
+                }
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void smallDestinationIsRejected() {
+        FrameCopier.copy(plane(16, 4), 16, 4, 4, 4, new byte[FrameCopier.packedSize(4, 4) - 1]);
+    }
+
+    private void assertMatchesLegacy(int width, int height, int rowStride) {
+        final ByteBuffer source = plane(rowStride, height);
+
+        final byte[] copied = new byte[FrameCopier.packedSize(width, height)];
+        FrameCopier.copy(source, rowStride, 4, width, height, copied);
+
+        assertArrayEquals(legacyCopy(source, rowStride, 4, width, height), copied);
+    }
+
+    /* Direct buffer like the image plane, filled with noise */
+    private ByteBuffer plane(int rowStride, int height) {
+        final byte[] content = new byte[rowStride * height];
+        random.nextBytes(content);
+
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(content.length);
+        buffer.put(content).flip();
+        return buffer;
+    }
+
+    /**
+     * What capture did before: padded rows were read into a bitmap as wide as the row stride,
+     * which was then cropped to the image width and copied out.
+     */
+    private static byte[] legacyCopy(ByteBuffer buffer, int rowStride, int pixelStride, int width, int height) {
+        final int rowPadding = rowStride - pixelStride * width;
+        final int paddedWidth = width + rowPadding / pixelStride;
+
+        /* Bitmap.copyPixelsFromBuffer */
+        final int[] padded = new int[paddedWidth * height];
+        final ByteBuffer source = buffer.duplicate();
+        source.rewind();
+        for (int i = 0; i < padded.length && source.remaining() >= 4; i++) padded[i] = source.getInt();
+
+        /* Bitmap.createBitmap(bitmap, 0, 0, width, height) and copyPixelsToBuffer */
+        final ByteBuffer output = ByteBuffer.allocate(width * height * 4);
+        for (int row = 0; row < height; row++) {
+            for (int column = 0; column < width; column++) output.putInt(padded[row * paddedWidth + column]);
+        }
+        return output.array();
+    }
+}
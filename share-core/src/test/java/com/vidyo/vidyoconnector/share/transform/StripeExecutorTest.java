@@ -0,0 +1,126 @@
+package com.vidyo.vidyoconnector.share.transform;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class StripeExecutorTest {
+
+    private static final int ROWS = 64;
+
+    @Test
+    public void everyRowIsProcessedOnce() {
+        final StripeExecutor executor = new StripeExecutor(4);
+        final AtomicInteger[] hits = newCounters();
+
+        executor.execute(ROWS, 2, (from, to) -> {
+            for (int row = from; row < to; row++) hits[row].incrementAndGet();
+        });
+
+        for (int row = 0; row < ROWS; row++) assertEquals("row " + row, 1, hits[row].get());
+        executor.shutdown();
+    }
+
+    @Test(timeout = 30_000)
+    public void reusedJobsProcessEveryRowOnce() throws InterruptedException {
+        final StripeExecutor executor = new StripeExecutor(3);
+        final int callers = 6;
+        final int calls = 2000;
+        final AtomicInteger wrongRows = new AtomicInteger();
+
+        /* More callers than job slots, some run on their own thread, all reuse slots of earlier calls */
+        final Thread[] threads = new Thread[callers];
+        for (int c = 0; c < callers; c++) {
+            threads[c] = new Thread(() -> {
+                for (int i = 0; i < calls; i++) {
+                    final AtomicInteger[] hits = newCounters();
+                    executor.execute(ROWS, 2, (from, to) -> {
+                        for (int row = from; row < to; row++) hits[row].incrementAndGet();
+                    });
+                    for (AtomicInteger hit : hits) if (hit.get() != 1) wrongRows.incrementAndGet();
+                }
+            });
+            threads[c].start();
+        }
+        for (Thread thread : threads) thread.join();
+
+        assertEquals(0, wrongRows.get());
+        executor.shutdown();
+    }
+
+    @Test
+    public void failureIsNotRethrownByNextJob() {
+        final StripeExecutor executor = new StripeExecutor(2);
+        try {
+            executor.execute(ROWS, 1, (from, to) -> {
+                throw new IllegalStateException("stripe");
+            });
+            fail();
+        } catch (IllegalStateException expected) {
+            assertEquals("stripe", expected.getMessage());
+        }
+
+        final AtomicInteger rows = new AtomicInteger();
+        executor.execute(ROWS, 1, (from, to) -> rows.addAndGet(to - from));
+        assertEquals(ROWS, rows.get());
+        executor.shutdown();
+    }
+
+    @Test
+    public void workerFailureIsRethrown() {
+        final StripeExecutor executor = new StripeExecutor(2);
+        try {
+            executor.execute(ROWS, 1, (from, to) -> {
+                if (from > 0) throw new IllegalStateException("stripe");
+            });
+            fail();
+        } catch (IllegalStateException expected) {
+            assertEquals("stripe", expected.getMessage());
+        }
+        executor.shutdown();
+    }
+
+    @Test
+    public void executeAfterShutdownRunsOnCaller() {
+        final StripeExecutor executor = new StripeExecutor(4);
+        executor.shutdown();
+
+        final Thread caller = Thread.currentThread();
+        final AtomicInteger rows = new AtomicInteger();
+        executor.execute(ROWS, 1, (from, to) -> {
+            assertEquals(caller, Thread.currentThread());
+            rows.addAndGet(to - from);
+        });
+
+        assertEquals(ROWS, rows.get());
+    }
+
+    @Test(timeout = 10_000)
+    public void shutdownDuringExecuteDoesNotHang() throws InterruptedException {
+        for (int attempt = 0; attempt < 200; attempt++) {
+            final StripeExecutor executor = new StripeExecutor(3);
+            final AtomicInteger rows = new AtomicInteger();
+
+            final Thread caller = new Thread(() -> {
+                for (int i = 0; i < 20; i++) {
+                    executor.execute(ROWS, 1, (from, to) -> rows.addAndGet(to - from));
+                }
+            });
+            caller.start();
+            Thread.yield();
+            executor.shutdown();
+            caller.join();
+
+            assertEquals(20 * ROWS, rows.get());
+        }
+    }
+
+    private static AtomicInteger[] newCounters() {
+        final AtomicInteger[] counters = new AtomicInteger[ROWS];
+        for (int i = 0; i < ROWS; i++) counters[i] = new AtomicInteger();
+        return counters;
+    }
+}
@@ -0,0 +1,212 @@
+package com.vidyo.vidyoconnector.share.transform;
+
+import com.vidyo.vidyoconnector.share.model.OutputFormat;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class YuvConverterTest {
+
+    private static final int[] BLACK = {0, 0, 0};
+    private static final int[] WHITE = {255, 255, 255};
+    private static final int[] RED = {255, 0, 0};
+    private static final int[] GREEN = {0, 255, 0};
+    private static final int[] BLUE = {0, 0, 255};
+
+    private static final int[][] COLORS = {BLACK, WHITE, RED, GREEN, BLUE};
+
+    /* Limited range Y, Cb, Cr of the colors above as given by the standards */
+    private static final int[][] BT601_YUV = {{16, 128, 128}, {235, 128, 128}, {82, 90, 240}, {145, 54, 34}, {41, 240, 110}};
+    private static final int[][] BT709_YUV = {{16, 128, 128}, {235, 128, 128}, {63, 102, 240}, {173, 42, 26}, {32, 240, 118}};
+
+    @Test
+    public void bt601SolidColors() {
+        assertSolidColors(ColorMatrix.BT601, BT601_YUV);
+    }
+
+    @Test
+    public void bt709SolidColors() {
+        assertSolidColors(ColorMatrix.BT709, BT709_YUV);
+    }
+
+    @Test
+    public void i420OddSizeLayout() {
+        final byte[] output = convertBlocks(OutputFormat.I420, ColorMatrix.BT601);
+        final int[] red = BT601_YUV[2], green = BT601_YUV[3], blue = BT601_YUV[4], white = BT601_YUV[1];
+
+        assertGolden(new int[]{
+                /* Y */
+                red[0], red[0], green[0],
+                red[0], red[0], green[0],
+                blue[0], blue[0], white[0],
+                /* U */
+                red[1], green[1],
+                blue[1], white[1],
+                /* V */
+                red[2], green[2],
+                blue[2], white[2],
+        }, output);
+    }
+
+    @Test
+    public void nv12OddSizeLayout() {
+        final byte[] output = convertBlocks(OutputFormat.NV12, ColorMatrix.BT709);
+        final int[] red = BT709_YUV[2], green = BT709_YUV[3], blue = BT709_YUV[4], white = BT709_YUV[1];
+
+        assertGolden(new int[]{
+                /* Y */
+                red[0], red[0], green[0],
+                red[0], red[0], green[0],
+                blue[0], blue[0], white[0],
+                /* UV */
+                red[1], red[2], green[1], green[2],
+                blue[1], blue[2], white[1], white[2],
+        }, output);
+    }
+
+    @Test
+    public void randomImagesMatchFloatReference() {
+        final Random random = new Random(7);
+        final int[][] sizes = {{1, 1}, {2, 2}, {5, 3}, {7, 7}, {16, 9}, {33, 17}};
+
+        for (ColorMatrix matrix : ColorMatrix.values()) {
+            for (OutputFormat format : new OutputFormat[]{OutputFormat.I420, OutputFormat.NV12}) {
+                for (int[] size : sizes) {
+                    final byte[] rgba = new byte[size[0] * size[1] * 4];
+                    random.nextBytes(rgba);
+                    assertMatchesReference(format, matrix, rgba, size[0], size[1]);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void stripedConversionMatchesSingleThread() {
+        final int width = 61;
+        final int height = 45;
+        final byte[] rgba = new byte[width * height * 4];
+        new Random(3).nextBytes(rgba);
+
+        final StripeExecutor stripeExecutor = new StripeExecutor(3);
+        for (OutputFormat format : new OutputFormat[]{OutputFormat.I420, OutputFormat.NV12}) {
+            final byte[] single = new byte[format.frameSize(width, height)];
+            final byte[] striped = new byte[format.frameSize(width, height)];
+
+            new YuvConverter(format, ColorMatrix.BT709).convert(rgba, width, height, single);
+            new YuvConverter(format, ColorMatrix.BT709, stripeExecutor).convert(rgba, width, height, striped);
+
+            assertArrayEquals(single, striped);
+        }
+        stripeExecutor.shutdown();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rgbaOutputIsRejected() {
+        new YuvConverter(OutputFormat.RGBA, ColorMatrix.BT601);
+    }
+
+    private static void assertSolidColors(ColorMatrix matrix, int[][] expected) {
+        for (int i = 0; i < COLORS.length; i++) {
+            final byte[] rgba = new byte[2 * 2 * 4];
+            for (int pixel = 0; pixel < 4; pixel++) fill(rgba, pixel, COLORS[i]);
+
+            final byte[] output = new byte[OutputFormat.I420.frameSize(2, 2)];
+            new YuvConverter(OutputFormat.I420, matrix).convert(rgba, 2, 2, output);
+
+            assertGolden(new int[]{
+                    expected[i][0], expected[i][0], expected[i][0], expected[i][0], expected[i][1], expected[i][2]
+            }, output);
+        }
+    }
+
+    /* 3x3 image, every 2x2 chroma block in its own color, blocks on the right and bottom edges are cut */
+    private static byte[] convertBlocks(OutputFormat format, ColorMatrix matrix) {
+        final int[][] pixels = {
+                RED, RED, GREEN,
+                RED, RED, GREEN,
+                BLUE, BLUE, WHITE
+        };
+        final byte[] rgba = new byte[pixels.length * 4];
+        for (int i = 0; i < pixels.length; i++) fill(rgba, i, pixels[i]);
+
+        final byte[] output = new byte[format.frameSize(3, 3)];
+        assertEquals(17, output.length);
+
+        new YuvConverter(format, matrix).convert(rgba, 3, 3, output);
+        return output;
+    }
+
+    private static void fill(byte[] rgba, int pixel, int[] rgb) {
+        rgba[pixel * 4] = (byte) rgb[0];
+        rgba[pixel * 4 + 1] = (byte) rgb[1];
+        rgba[pixel * 4 + 2] = (byte) rgb[2];
+        rgba[pixel * 4 + 3] = (byte) 0xFF;
+    }
+
+    /* Fixed point coefficients are within one code value of the exact ones */
+    private static void assertGolden(int[] expected, byte[] actual) {
+        assertEquals(expected.length, actual.length);
+        for (int i = 0; i < expected.length; i++) {
+            assertTrue("byte " + i + ": expected " + expected[i] + ", got " + (actual[i] & 0xFF),
+                    Math.abs(expected[i] - (actual[i] & 0xFF)) <= 1);
+        }
+    }
+
+    private static void assertMatchesReference(OutputFormat format, ColorMatrix matrix, byte[] rgba, int width, int height) {
+        final byte[] output = new byte[format.frameSize(width, height)];
+        new YuvConverter(format, matrix).convert(rgba, width, height, output);
+
+        final double kr = matrix == ColorMatrix.BT601 ? 0.299 : 0.2126;
+        final double kb = matrix == ColorMatrix.BT601 ? 0.114 : 0.0722;
+        final int chromaWidth = (width + 1) / 2;
+        final int chromaHeight = (height + 1) / 2;
+        final int[] expected = new int[output.length];
+
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                final int p = (y * width + x) * 4;
+                expected[y * width + x] = (int) Math.round(luma(kr, kb, rgba[p] & 0xFF, rgba[p + 1] & 0xFF, rgba[p + 2] & 0xFF));
+            }
+        }
+
+        for (int cy = 0; cy < chromaHeight; cy++) {
+            for (int cx = 0; cx < chromaWidth; cx++) {
+                /* Average of the 2x2 block, edge pixels repeated for odd sizes */
+                double r = 0, g = 0, b = 0;
+                for (int dy = 0; dy < 2; dy++) {
+                    for (int dx = 0; dx < 2; dx++) {
+                        final int p = (Math.min(cy * 2 + dy, height - 1) * width + Math.min(cx * 2 + dx, width - 1)) * 4;
+                        r += (rgba[p] & 0xFF) / 4.0;
+                        g += (rgba[p + 1] & 0xFF) / 4.0;
+                        b += (rgba[p + 2] & 0xFF) / 4.0;
+                    }
+                }
+
+                final double yNorm = kr * r + (1 - kr - kb) * g + kb * b;
+                final int u = (int) Math.round(128 + 224 * (b - yNorm) / (2 * (1 - kb)) / 255);
+                final int v = (int) Math.round(128 + 224 * (r - yNorm) / (2 * (1 - kr)) / 255);
+
+                final int lumaSize = width * height;
+                final int index = cy * chromaWidth + cx;
+                if (format == OutputFormat.NV12) {
+                    expected[lumaSize + index * 2] = u;
+                    expected[lumaSize + index * 2 + 1] = v;
+                } else {
+                    expected[lumaSize + index] = u;
+                    expected[lumaSize + chromaWidth * chromaHeight + index] = v;
+                }
+            }
+        }
+
+        assertGolden(expected, output);
+    }
+
+    private static double luma(double kr, double kb, int r, int g, int b) {
+        return 16 + 219 * (kr * r + (1 - kr - kb) * g + kb * b) / 255;
+    }
+}